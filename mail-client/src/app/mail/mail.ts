@@ -1,7 +1,7 @@
 import { Component, inject, OnInit, signal, computed } from '@angular/core';
 import { AuthenticationService } from '../services/authentication-service';
 import { Router } from '@angular/router';
-import { MailService, Mail as MailEntity, ComposeEmailDTO, Contact, MailFilterDTO } from '../services/mail-service';
+import { MailService, Mail as MailEntity, MailSummary, ComposeEmailDTO, Contact, MailFilterDTO } from '../services/mail-service';
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { Observable, forkJoin } from 'rxjs';
@@ -86,6 +86,10 @@ export class Mail implements OnInit {
   }
 
   pagingRight() {
+    // Sorted views are loaded a page at a time; fetch the next one before the user reaches the end
+    if ((this.page() + 2) * this.itemsPerPage >= this.mails().length) {
+      this.loadMoreSortedMails();
+    }
     const n = this.mails().length;
     const pages = Math.ceil(n / this.itemsPerPage);
     if (this.page() < pages) {
@@ -335,21 +339,7 @@ export class Mail implements OnInit {
   }
 
   loadPrioritySorting(){
-    const email = this.currentUser()?.email;
-    if(email == undefined){
-      return
-    }
-    this.mailService.loadSortedMails(email , "priority", this.isPriorityMode()).subscribe({
-      next: (mails) => {
-        this.mails.set(mails);
-        this.isLoading.set(false);
-      },
-      error: (error) => {
-        console.error('Error loading inbox:', error);
-        this.errorMessage.set('Failed to load inbox');
-        this.isLoading.set(false);
-      }
-    });
+    this.loadSortedPage("priority", this.isPriorityMode());
   }
 
   // Load inbox mails
@@ -368,6 +358,7 @@ export class Mail implements OnInit {
         console.log('=== LOADED MAILS ===');
         console.log('Mail IDs:', mails.map(m => m.id));
         console.log('Full mails:', mails);
+        this.sortedView = null;
         this.mails.set(mails);
         this.isLoading.set(false);
       },
@@ -389,6 +380,7 @@ export class Mail implements OnInit {
 
     this.mailService.getSentMails(userEmail).subscribe({
       next: (mails) => {
+        this.sortedView = null;
         this.mails.set(mails);
         this.isLoading.set(false);
       },
@@ -411,6 +403,7 @@ export class Mail implements OnInit {
     // Request: GET /api/mail/drafts/{email}
     this.mailService.getDraftMails(userEmail).subscribe({
       next: (mails) => {
+        this.sortedView = null;
         this.mails.set(mails);
         this.isLoading.set(false);
       },
@@ -433,6 +426,7 @@ export class Mail implements OnInit {
     // Request: GET /api/mail/folder/{email}/{folderName}
     this.mailService.getMailsByFolder(userEmail, folderName).subscribe({
       next: (mails) => {
+        this.sortedView = null;
         this.mails.set(mails);
         this.isLoading.set(false);
       },
@@ -711,6 +705,17 @@ export class Mail implements OnInit {
 
   setselectedMail(mail: MailEntity | null) {
     this.selectedMail.set(mail);
+    // Mails from a sorted page are summaries: load the full body and attachments
+    if (mail && mail.attachments === undefined && this.sortedView) {
+      this.mailService.getMailDetails(mail.id).subscribe({
+        next: (details) => {
+          if (this.selectedMail() === mail) {
+            this.selectedMail.set({ ...mail, body: details.body, attachments: details.attachments ?? [] });
+          }
+        },
+        error: (error) => console.error('Error loading mail:', error)
+      });
+    }
     // Automatically mark as read when opening an email
     if (mail && !mail.isRead) {
       this.markAsRead(mail.id);
@@ -837,6 +842,7 @@ export class Mail implements OnInit {
             isRead: m.isRead ?? m.read,
             attachments: m.attachments
           }));
+          this.sortedView = null;
           this.mails.set(mappedMails);
           this.isLoading.set(false);
           this.currentFolder.set('search');
@@ -943,6 +949,7 @@ export class Mail implements OnInit {
             isRead: m.isRead ?? m.read,
             attachments: m.attachments
           }));
+          this.sortedView = null;
           this.mails.set(mappedMails);
           this.isLoading.set(false);
           this.currentFolder.set('search');
@@ -1157,13 +1164,23 @@ export class Mail implements OnInit {
   }
 
   loadSortedMails(){
+    this.loadSortedPage(this.sortCriteria(), this.sortOrder());
+  }
+
+  // Sort currently shown and its next page cursor; null once another folder or search is loaded
+  private sortedView: { criteria: string, order: boolean, cursor: string | null } | null = null;
+  private loadingMoreSorted = false;
+
+  // First page of the sorted inbox; later pages are appended by loadMoreSortedMails
+  private loadSortedPage(criteria: string, order: boolean) {
     const email = this.currentUser()?.email;
     if(email == undefined){
       return
     }
-    this.mailService.loadSortedMails(email , this.sortCriteria(), this.sortOrder()).subscribe({
-      next: (mails) => {
-        this.mails.set(mails);
+    this.mailService.loadSortedMailsPage(email, criteria, order).subscribe({
+      next: (page) => {
+        this.sortedView = { criteria, order, cursor: page.nextCursor };
+        this.mails.set(page.items.map(summary => this.fromSummary(summary)));
         this.isLoading.set(false);
       },
       error: (error) => {
@@ -1173,4 +1190,43 @@ export class Mail implements OnInit {
       }
     });
   }
+
+  private loadMoreSortedMails() {
+    const view = this.sortedView;
+    const email = this.currentUser()?.email;
+    if (!view || !view.cursor || email == undefined || this.loadingMoreSorted) {
+      return;
+    }
+    this.loadingMoreSorted = true;
+    this.mailService.loadSortedMailsPage(email, view.criteria, view.order, view.cursor).subscribe({
+      next: (page) => {
+        this.loadingMoreSorted = false;
+        // Another folder, search or sort replaced the list meanwhile
+        if (this.sortedView !== view) {
+          return;
+        }
+        view.cursor = page.nextCursor;
+        this.mails.update(currentMails => [...currentMails, ...page.items.map(summary => this.fromSummary(summary))]);
+      },
+      error: (error) => {
+        this.loadingMoreSorted = false;
+        console.error('Error loading more mails:', error);
+      }
+    });
+  }
+
+  // Summaries carry a snippet only; the body and attachments are fetched when the mail is opened
+  private fromSummary(summary: MailSummary): MailEntity {
+    return {
+      id: summary.id,
+      sender: summary.sender,
+      receiver: summary.receiver,
+      body: summary.snippet,
+      subject: summary.subject,
+      timestamp: summary.timestamp,
+      priority: summary.priority,
+      folderName: summary.folderName,
+      isRead: summary.isRead
+    };
+  }
 }
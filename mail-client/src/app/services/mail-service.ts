@@ -31,6 +31,27 @@ export interface Mail {
   attachments?: Attachment[];
 }
 
+// Row of a paged folder listing: a body snippet instead of the body, no attachments
+export interface MailSummary {
+  id: number;
+  sender: string;
+  receiver: string;
+  subject: string;
+  snippet: string;
+  timestamp: string;
+  priority: number;
+  folderName: string;
+  isRead: boolean;
+  attachmentCount: number;
+  modSeq: number;
+}
+
+// nextCursor is null on the last page
+export interface MailPage<T> {
+  items: T[];
+  nextCursor: string | null;
+}
+
 export interface ComposeEmailDTO {
   sender?: string;
   receivers: string[];
@@ -97,6 +118,13 @@ export class MailService {
     return this.http.get<Mail>(`${this.apiURL}/${mailId}`);
   }
 
+  /* [BACKEND REQ] GET Mail Details
+     Request: GET /api/mail/{mailId}/details
+     Response: Mail with body and attachment descriptors */
+  getMailDetails(mailId: number): Observable<Mail> {
+    return this.http.get<Mail>(`${this.apiURL}/${mailId}/details`);
+  }
+
   /* [BACKEND REQ] Send Simple Mail (Text Only)
      Request: POST /api/mail/send
      Body: ComposeEmailDTO (JSON) */
@@ -229,8 +257,16 @@ export class MailService {
     return this.http.delete(`${this.apiURL}/contacts/${contactId}`);
   }
 
-  loadSortedMails(email: string, criteria: string, order:boolean): Observable<any> {
-    return this.http.get(`${this.apiURL}/sortMail/${email}/${criteria}/${order}`);
+  /* [BACKEND REQ] GET Sorted Inbox Page
+     Request: GET /api/mail/sortMail/{email}/{criteria}/{order}/page?cursor={nextCursor}&limit={limit}
+     Response: MailPage of summaries; pass nextCursor back for the following page */
+  loadSortedMailsPage(email: string, criteria: string, order: boolean,
+                      cursor: string | null = null, limit: number = 50): Observable<MailPage<MailSummary>> {
+    const params: Record<string, string> = { limit: limit.toString() };
+    if (cursor) {
+      params['cursor'] = cursor;
+    }
+    return this.http.get<MailPage<MailSummary>>(`${this.apiURL}/sortMail/${email}/${criteria}/${order}/page`, { params });
   }
   copyEmailToFolder(mailId: number, folderName: string): Observable<any> {
     return this.http.post(`http://localhost:8080/api/folder/copy`, null, {
@@ -16,6 +16,15 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Controller for handling attachment downloads
+ *
+ * Responses carry ETag (content hash) and Last-Modified, so Spring answers
+ * If-None-Match / If-Modified-Since with 304 Not Modified, and
+ * Accept-Ranges: bytes, so Range requests are answered with 206 Partial Content
+ * by streaming only the requested regions of the file
+ *
+ * Blobs stored compressed are inflated while streaming, or - when the client
+ * accepts gzip and asks for the whole file - sent as stored with
+ * Content-Encoding: gzip, so neither side decompresses on the server
  */
 @RestController
 @RequestMapping("/api/mail/attachments")
@@ -34,13 +43,52 @@ public class AttachmentController {
      * @throws IOException if file cannot be loaded
      */
     @GetMapping("/{storedFileName}")
-    public ResponseEntity<Resource> downloadAttachment(@PathVariable String storedFileName) throws IOException {
+    public ResponseEntity<Resource> downloadAttachment(
+            @PathVariable String storedFileName,
+            @RequestHeader HttpHeaders requestHeaders
+    ) throws IOException {
         // Find attachment in database to get metadata
         Attachment attachment = attachmentRepository.findByStoredFileName(storedFileName)
                 .orElseThrow(() -> new RuntimeException("Attachment not found: " + storedFileName));
-        
-        // Load file as resource
-        Resource resource = fileStorageService.loadFileAsResource(storedFileName, attachment.getMail().getMailId());
+
+        return serveAttachment(attachment, requestHeaders);
+    }
+
+    /**
+     * Get attachment by ID (alternative endpoint)
+     * 
+     * @param id The attachment ID
+     * @return ResponseEntity with file content and appropriate headers
+     * @throws IOException if file cannot be loaded
+     */
+    @GetMapping("/id/{id}")
+    public ResponseEntity<Resource> downloadAttachmentById(
+            @PathVariable Long id,
+            @RequestHeader HttpHeaders requestHeaders
+    ) throws IOException {
+        Attachment attachment = attachmentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Attachment not found with id: " + id));
+
+        return serveAttachment(attachment, requestHeaders);
+    }
+
+    /**
+     * Build the download response for an attachment
+     * The file is resolved from the stored path, so the owning mail is never loaded
+     *
+     * @param attachment The attachment metadata
+     * @param requestHeaders headers of the download request (Accept-Encoding, Range)
+     * @return ResponseEntity with validators, range support and the file resource
+     * @throws IOException if file cannot be loaded
+     */
+    private ResponseEntity<Resource> serveAttachment(Attachment attachment, HttpHeaders requestHeaders) throws IOException {
+        String filePath = attachment.getFilePath();
+        boolean compressed = fileStorageService.isCompressedFile(filePath);
+        boolean sendCompressed = compressed && acceptsGzip(requestHeaders)
+                && requestHeaders.getFirst(HttpHeaders.RANGE) == null;
+        Resource resource = sendCompressed
+                ? fileStorageService.loadCompressedFile(filePath)
+                : fileStorageService.loadStoredFile(filePath, attachment.getFileSize());
         
         // Determine content type
         String contentType = attachment.getContentType();
@@ -60,25 +108,40 @@ public class AttachmentController {
             contentDisposition = "attachment; filename=\"" + encodeFilename(attachment.getFileName()) + "\"";
         }
         
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .contentType(MediaType.parseMediaType(contentType))
                 .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .lastModified(resource.lastModified());
+        if (compressed) {
+            response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (sendCompressed) {
+            // The encoded representation needs its own validator
+            return response
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .eTag(buildETag(attachment, resource) + "-gzip")
+                    .body(resource);
+        }
+        return response
+                .eTag(buildETag(attachment, resource))
                 .body(resource);
     }
 
+    private boolean acceptsGzip(HttpHeaders requestHeaders) {
+        String acceptEncoding = requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
     /**
-     * Get attachment by ID (alternative endpoint)
-     * 
-     * @param id The attachment ID
-     * @return ResponseEntity with file content and appropriate headers
-     * @throws IOException if file cannot be loaded
+     * Stored files never change, so the content hash is a strong validator
+     * Attachments saved before hashes were recorded fall back to id + size + mtime
      */
-    @GetMapping("/id/{id}")
-    public ResponseEntity<Resource> downloadAttachmentById(@PathVariable Long id) throws IOException {
-        Attachment attachment = attachmentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Attachment not found with id: " + id));
-        
-        return downloadAttachment(attachment.getStoredFileName());
+    private String buildETag(Attachment attachment, Resource resource) throws IOException {
+        if (attachment.getContentHash() != null) {
+            return attachment.getContentHash();
+        }
+        return attachment.getId() + "-" + resource.contentLength() + "-" + resource.lastModified();
     }
 
     /**
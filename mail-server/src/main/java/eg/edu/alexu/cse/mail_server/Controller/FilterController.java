@@ -2,10 +2,15 @@ package eg.edu.alexu.cse.mail_server.Controller;
 
 
 import eg.edu.alexu.cse.mail_server.Service.FilterService;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.FilterStrategy;
 import eg.edu.alexu.cse.mail_server.dto.EmailViewDto;
 import eg.edu.alexu.cse.mail_server.dto.MailFilterDTO;
+import eg.edu.alexu.cse.mail_server.dto.MailPageDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -64,4 +69,77 @@ public class FilterController {
         mailFilterDTO.setUserId(userId);
         return filterService.getEmailsOr(mailFilterDTO);
     }
+
+    /**
+     * Paginated AND search - best-ranked matches first
+     * Pass the returned nextCursor back as ?cursor= for the next page
+     * @param userId the ID of the user performing the search
+     * @param mailFilterDTO the filter criteria
+     * @param cursor nextCursor of the previous page, or absent for the first page
+     * @param limit page size
+     * @return one page of filtered emails for this user
+     */
+    @PostMapping("/{userId}/and/page")
+    public MailPageDto<EmailViewDto> getEmailsAndPage(
+            @PathVariable Long userId,
+            @RequestBody MailFilterDTO mailFilterDTO,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        mailFilterDTO.setUserId(userId);
+        return filterService.getEmailsPage(mailFilterDTO, true, cursor, limit);
+    }
+
+    /**
+     * Paginated OR search - same paging as /and/page
+     * @param userId the ID of the user performing the search
+     * @param mailFilterDTO the filter criteria
+     * @param cursor nextCursor of the previous page, or absent for the first page
+     * @param limit page size
+     * @return one page of filtered emails for this user
+     */
+    @PostMapping("/{userId}/or/page")
+    public MailPageDto<EmailViewDto> getEmailsOrPage(
+            @PathVariable Long userId,
+            @RequestBody MailFilterDTO mailFilterDTO,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        mailFilterDTO.setUserId(userId);
+        return filterService.getEmailsPage(mailFilterDTO, false, cursor, limit);
+    }
+
+    /**
+     * Streamed AND search - same matches as /and, written to the response
+     * one email at a time, newest first, for very large mailboxes and exports
+     * @param userId the ID of the user performing the search
+     * @param mailFilterDTO the filter criteria
+     * @return JSON array of filtered emails for this user
+     */
+    @PostMapping("/{userId}/and/stream")
+    public ResponseEntity<StreamingResponseBody> streamEmailsAnd(
+            @PathVariable Long userId,
+            @RequestBody MailFilterDTO mailFilterDTO) {
+        mailFilterDTO.setUserId(userId);
+        return stream(userId, filterService.prepareFilter(mailFilterDTO, true));
+    }
+
+    /**
+     * Streamed OR search - same matches as /or, written to the response one email at a time, newest first
+     * @param userId the ID of the user performing the search
+     * @param mailFilterDTO the filter criteria
+     * @return JSON array of filtered emails for this user
+     */
+    @PostMapping("/{userId}/or/stream")
+    public ResponseEntity<StreamingResponseBody> streamEmailsOr(
+            @PathVariable Long userId,
+            @RequestBody MailFilterDTO mailFilterDTO) {
+        mailFilterDTO.setUserId(userId);
+        return stream(userId, filterService.prepareFilter(mailFilterDTO, false));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(Long userId, FilterStrategy filter) {
+        StreamingResponseBody body = out -> filterService.streamEmails(userId, filter, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 }
@@ -2,6 +2,7 @@ package eg.edu.alexu.cse.mail_server.Controller;
 
 
 import eg.edu.alexu.cse.mail_server.Service.MailService;
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
 import jakarta.websocket.server.PathParam;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -45,4 +46,15 @@ public class FolderController {
         return mailService.getUserCustomFolders(userId);
     }
 
+    /**
+     * Get every folder of a user with its total and unread counts (for folder badges)
+     *
+     * @param userId ID of the user
+     * @return List of folders with their counts
+     */
+    @GetMapping("/summary/{userId}")
+    public List<FolderCountDto> getMailboxSummary(@PathVariable Long userId) {
+        return mailService.getMailboxSummary(userId);
+    }
+
 }
@@ -4,22 +4,36 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import eg.edu.alexu.cse.mail_server.Service.MailService;
+import eg.edu.alexu.cse.mail_server.Service.outbox.OutboxService;
+import eg.edu.alexu.cse.mail_server.Service.push.MailEventHub;
 import eg.edu.alexu.cse.mail_server.dto.ComposeEmailDTO;
+import eg.edu.alexu.cse.mail_server.dto.DraftPatchDto;
+import eg.edu.alexu.cse.mail_server.dto.DraftSavedDto;
 import eg.edu.alexu.cse.mail_server.dto.EmailViewDto;
+import eg.edu.alexu.cse.mail_server.dto.MailChangesDto;
+import eg.edu.alexu.cse.mail_server.dto.MailPageDto;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import eg.edu.alexu.cse.mail_server.dto.OutboxStatusDto;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -28,20 +42,38 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class MailController {
     private final MailService mailService;
+    private final MailEventHub mailEventHub;
+    private final OutboxService outboxService;
 
     @PostMapping("/send-with-attachments")
     public Map<String, String> sendMail(
             @RequestPart("email") ComposeEmailDTO composeEmailDTO,
             @RequestPart(value = "attachments", required = false) List<MultipartFile> attachments
     ) throws IOException {
-        mailService.sendWithAttachments(composeEmailDTO, attachments);
-        return Map.of("message", "Email sent successfully");
+        // Stored in SENT and queued; inbox copies are delivered in the background
+        Long outboxId = mailService.sendWithAttachments(composeEmailDTO, attachments);
+        return Map.of("message", "Email sent successfully", "outboxId", String.valueOf(outboxId));
     }
 
+    // Per-recipient delivery status of a sent mail
+    @GetMapping("/outbox/{outboxId}")
+    public OutboxStatusDto getDeliveryStatus(@PathVariable Long outboxId) {
+        return outboxService.getStatus(outboxId);
+    }
+
+    // New draft, or saved over an existing one when draftId and draftVersion are given
     @PostMapping("/draft")
     public Map<String, String> draftEmail(@RequestBody ComposeEmailDTO composeEmailDTO) {
-        mailService.draft(composeEmailDTO);
-        return Map.of("message", "Email drafted successfully");
+        DraftSavedDto saved = mailService.draft(composeEmailDTO);
+        return Map.of("message", "Email drafted successfully",
+                "draftId", String.valueOf(saved.getDraftId()),
+                "version", String.valueOf(saved.getVersion()));
+    }
+
+    // Autosave: only the changed fields; 409 if a newer save already happened
+    @PatchMapping("/draft/{draftId}")
+    public DraftSavedDto patchDraft(@PathVariable Long draftId, @RequestBody DraftPatchDto changes) {
+        return mailService.patchDraft(draftId, changes);
     }
 
     // Get inbox emails
@@ -74,15 +106,101 @@ public class MailController {
         return mailService.getMailsByFolder(userEmail, folderName);
     }
 
+    // Streamed folder export - same body as /folder/{userEmail}/{folderName}, written row by row
+    @GetMapping("/folder/{userEmail}/{folderName}/stream")
+    public ResponseEntity<StreamingResponseBody> streamMailsByFolder(@PathVariable String userEmail,
+                                                                     @PathVariable String folderName) {
+        Long userId = mailService.getUserId(userEmail);
+        StreamingResponseBody body = out -> mailService.streamMailsByFolder(userId, folderName, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Paginated folder listings - pass the returned nextCursor back as ?cursor= for the next page
+    @GetMapping("/inbox/{userEmail}/page")
+    public MailPageDto<MailSummaryDto> getInboxPage(@PathVariable String userEmail,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer limit) {
+        return mailService.getMailsPage(userEmail, "INBOX", cursor, limit);
+    }
+
+    @GetMapping("/sent/{userEmail}/page")
+    public MailPageDto<MailSummaryDto> getSentPage(@PathVariable String userEmail,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer limit) {
+        return mailService.getMailsPage(userEmail, "SENT", cursor, limit);
+    }
+
+    @GetMapping("/drafts/{userEmail}/page")
+    public MailPageDto<MailSummaryDto> getDraftsPage(@PathVariable String userEmail,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit) {
+        return mailService.getMailsPage(userEmail, "DRAFTS", cursor, limit);
+    }
+
+    @GetMapping("/trash/{userEmail}/page")
+    public MailPageDto<MailSummaryDto> getTrashPage(@PathVariable String userEmail,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer limit) {
+        return mailService.getMailsPage(userEmail, "trash", cursor, limit);
+    }
+
+    @GetMapping("/folder/{userEmail}/{folderName}/page")
+    public MailPageDto<MailSummaryDto> getFolderPage(@PathVariable String userEmail,
+                                                   @PathVariable String folderName,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit) {
+        return mailService.getMailsPage(userEmail, folderName, cursor, limit);
+    }
+
+    // Server-sent events stream - pushes a "mail-delivered" event for each new inbox mail
+    @GetMapping(path = "/events/{userEmail}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToMailEvents(@PathVariable String userEmail) {
+        return mailEventHub.subscribe(userEmail);
+    }
+
+    // Delta sync - mails added, changed or removed since the given mod-sequence
+    // Repeat with ?since=highestModSeq while hasMore is true
+    @GetMapping("/changes")
+    public MailChangesDto getChanges(@RequestParam String userEmail,
+                                     @RequestParam(defaultValue = "0") long since,
+                                     @RequestParam(required = false) Integer limit) {
+        return mailService.getChangesSince(userEmail, since, limit);
+    }
+
     // Get mail by ID
     @GetMapping("/{mailId}")
     public Mail getMailById(@PathVariable Long mailId) {
         return mailService.getMailById(mailId);
     }
 
+    // Get mail with attachment descriptors; ?inline=true embeds small attachments as Base64
+    @GetMapping("/{mailId}/details")
+    public EmailViewDto getMailWithAttachments(@PathVariable Long mailId,
+                                               @RequestParam(defaultValue = "false") boolean inline) throws IOException {
+        return mailService.getMailWithAttachments(mailId, inline);
+    }
+
+    // First page of the sorted inbox - criteria may list secondary keys, e.g. /sortMail/{email}/priority,date/false
+    // Use the /page variant below to read further
     @GetMapping("/sortMail/{email}/{criteria}/{order}")
-    public List<Mail> getSortedMails(@PathVariable String email, @PathVariable String criteria, @PathVariable boolean order){
-        return mailService.getSortedMails(email, criteria, order);
+    public List<MailSummaryDto> getSortedMails(@PathVariable String email,
+                                               @PathVariable String criteria,
+                                               @PathVariable boolean order,
+                                               @RequestParam(required = false) Integer limit) {
+        return mailService.getSortedMails(email, criteria, order, limit);
+    }
+
+    // Sorted folder page - pass the returned nextCursor back as ?cursor= for the next page
+    @GetMapping("/sortMail/{email}/{criteria}/{order}/page")
+    public MailPageDto<MailSummaryDto> getSortedMailsPage(@PathVariable String email,
+                                                          @PathVariable String criteria,
+                                                          @PathVariable boolean order,
+                                                          @RequestParam(defaultValue = "INBOX") String folder,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit) {
+        return mailService.getSortedMailsPage(email, criteria, order, folder, cursor, limit);
     }
 
     // Mark as read
@@ -0,0 +1,72 @@
+package eg.edu.alexu.cse.mail_server.Controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import eg.edu.alexu.cse.mail_server.Service.upload.UploadService;
+import eg.edu.alexu.cse.mail_server.dto.UploadRequestDto;
+import eg.edu.alexu.cse.mail_server.dto.UploadSessionDto;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resumable attachment uploads
+ * Create a session, PUT the file in chunks (raw bytes, each at the offset
+ * reported by the previous response), then complete it and put the upload
+ * id in the compose request's uploadIds. After a dropped connection, GET the
+ * session and continue from its receivedBytes
+ */
+@RestController
+@RequestMapping("/api/mail/uploads")
+@CrossOrigin(origins = "http://localhost:4200")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final UploadService uploadService;
+
+    @PostMapping
+    public UploadSessionDto createUpload(@RequestBody UploadRequestDto request) {
+        return uploadService.createSession(request);
+    }
+
+    @GetMapping("/{uploadId}")
+    public UploadSessionDto getUpload(@PathVariable String uploadId) {
+        return uploadService.getSession(uploadId);
+    }
+
+    // The request body is streamed straight to disk
+    @PutMapping(path = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public UploadSessionDto uploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            InputStream content
+    ) throws IOException {
+        return uploadService.appendChunk(uploadId, offset, content);
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public UploadSessionDto completeUpload(
+            @PathVariable String uploadId,
+            @RequestParam(required = false) String sha256
+    ) throws IOException {
+        return uploadService.complete(uploadId, sha256);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public Map<String, String> cancelUpload(@PathVariable String uploadId) throws IOException {
+        uploadService.cancel(uploadId);
+        return Map.of("message", "Upload cancelled");
+    }
+}
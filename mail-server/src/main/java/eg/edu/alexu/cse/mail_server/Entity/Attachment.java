@@ -2,14 +2,21 @@ package eg.edu.alexu.cse.mail_server.Entity;
 
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,16 +27,23 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Table(indexes = {
+        // findByMailMailId and per-mail attachment counts
+        @Index(name = "idx_attachment_mail", columnList = "mail_id")
+})
 public class Attachment {
+    // Same pooled generator table as Mail, so attachment rows batch with their mail
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "attachment_ids")
+    @TableGenerator(name = "attachment_ids", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "attachment", allocationSize = 50)
     private Long id;
 
     @Column(name = "file_name", nullable = false)
     private String fileName; // Original filename uploaded by user
 
     @Column(name = "stored_file_name", nullable = false, unique = true)
-    private String storedFileName; // UUID-based unique filename on disk
+    private String storedFileName; // UUID-based unique handle used in download URLs
 
     @Column(name = "content_type", nullable = false)
     private String contentType;
@@ -37,16 +51,35 @@ public class Attachment {
     @Column(name = "file_size")
     private Long fileSize;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the file content (hex)
+
     @Column(name = "file_path", unique = true)
-    private String filePath; // Full path to file on disk
+    private String filePath; // Per-mail file of attachments stored before blobs; null for blob-backed rows
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_hash")
+    private AttachmentBlob blob; // Shared content-addressed file
 
     @Column(name = "indexed_content", columnDefinition = "TEXT")
     private String indexedContent; // For searching
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "indexing_status", length = 16)
+    private IndexingStatus indexingStatus; // indexedContent is filled in the background while PENDING
+
     @Column(name = "upload_date")
     private LocalDateTime uploadDate;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "mail_id")
     private Mail mail;
+
+    /**
+     * Full path to the file on disk, whether shared or per-mail
+     */
+    public String getFilePath() {
+        return blob != null ? blob.getFilePath() : filePath;
+    }
 }
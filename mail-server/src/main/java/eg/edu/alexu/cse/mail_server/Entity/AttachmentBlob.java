@@ -0,0 +1,53 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One attachment file on disk, stored once per distinct content
+ * Every Attachment row with the same SHA-256 points at the same blob;
+ * refCount is the number of those rows, and the file is deleted when it
+ * drops to zero
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "attachment_blobs")
+public class AttachmentBlob {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the file content (hex)
+
+    @Column(name = "file_path", nullable = false)
+    private String filePath;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    // Extracted text, shared by every attachment with this content
+    @Column(name = "indexed_content", columnDefinition = "TEXT")
+    private String indexedContent;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "indexing_status", length = 16)
+    private IndexingStatus indexingStatus;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
+import jakarta.persistence.Index;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -22,7 +23,10 @@ import jakarta.persistence.CollectionTable;
 import java.util.List;
 
 @Entity
-@Table(name = "contacts")
+@Table(name = "contacts", indexes = {
+        // Contacts of a user, listed and searched by name
+        @Index(name = "idx_contact_user_name", columnList = "user_id, contact_name")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -0,0 +1,12 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+/**
+ * Progress of an outbox entry and of each of its recipients
+ * Recipients only use PENDING, DELIVERED and FAILED
+ */
+public enum DeliveryStatus {
+    PENDING,
+    DELIVERING,
+    DELIVERED,
+    FAILED
+}
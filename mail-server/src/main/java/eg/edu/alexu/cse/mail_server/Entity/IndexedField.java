@@ -0,0 +1,9 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+/**
+ * Mail field a search term was taken from
+ */
+public enum IndexedField {
+    SUBJECT,
+    BODY
+}
@@ -0,0 +1,13 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+/**
+ * Progress of attachment text extraction
+ * Attachments stored before extraction moved to the background have no status
+ */
+public enum IndexingStatus {
+    PENDING,
+    INDEXING,   // blobs only: claimed by an extraction worker
+    INDEXED,
+    SKIPPED,    // larger than mail.indexing.max-file-bytes
+    FAILED
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -16,11 +17,27 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Table(indexes = {
+        // Folder listings and sort engine: owner + folder, then the sort key, then mailId as tie breaker
+        @Index(name = "idx_mail_owner_folder_timestamp", columnList = "owner_id, folder_name, timestamp, mail_id"),
+        @Index(name = "idx_mail_owner_folder_sender", columnList = "owner_id, folder_name, sender_sort, mail_id"),
+        @Index(name = "idx_mail_owner_folder_subject", columnList = "owner_id, folder_name, subject_sort, mail_id"),
+        @Index(name = "idx_mail_owner_folder_priority", columnList = "owner_id, folder_name, priority, timestamp, mail_id"),
+        // Whole-mailbox reads (filters/search) ordered by date across all folders
+        @Index(name = "idx_mail_owner_timestamp", columnList = "owner_id, timestamp"),
+        // Scheduled trash purge: folder_name = 'trash' AND deleted_at < ?
+        @Index(name = "idx_mail_folder_deleted_at", columnList = "folder_name, deleted_at"),
+        // Delta sync: mails of an owner changed after a mod-sequence
+        @Index(name = "idx_mail_owner_modseq", columnList = "owner_id, mod_seq")
+})
 public class Mail {
 
 
+    // Pooled table IDs (MySQL has no sequences): IDENTITY would disable JDBC insert batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "mail_ids")
+    @TableGenerator(name = "mail_ids", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "mail", allocationSize = 50)
     private Long mailId;
 
     @Column(nullable = false)
@@ -28,13 +45,29 @@ public class Mail {
     @Column(nullable = false)
     private String receiver;
 
+    // Inline body of mails stored before bodies were shared; null when messageBody is set
     @Lob
     @Column(columnDefinition = "TEXT")
     private String body;
 
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
+    @JoinColumn(name = "message_body_id")
+    private MessageBody messageBody;
+
     @Column(nullable = false)
     private String subject;
 
+    // Lower-cased copies of sender and subject, kept in sync on every write
+    // so case-insensitive sorting can use a plain index
+    @JsonIgnore
+    @Column(name = "sender_sort")
+    private String senderSort;
+
+    @JsonIgnore
+    @Column(name = "subject_sort")
+    private String subjectSort;
+
     @Builder.Default
     private LocalDateTime timestamp = LocalDateTime.now();
 
@@ -50,9 +83,22 @@ public class Mail {
     // Track when email was moved to trash for automatic deletion after 30 days
     private LocalDateTime deletedAt;
 
+    // Owner's mailbox mod-sequence at the last insert, flag change or move (for delta sync)
+    @JsonIgnore
+    @Builder.Default
+    @Column(name = "mod_seq", nullable = false)
+    private long modSeq = 0;
+
+    // Bumped on every autosave of a draft; a save based on an older version is rejected
+    @JsonIgnore
+    @Builder.Default
+    @Column(name = "draft_version", nullable = false)
+    private long draftVersion = 0;
+
     @JsonIgnore
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "mail_id")
+    @BatchSize(size = 100) // search snapshots read the attachments of every candidate
     private List<Attachment> attachments;
 
     // Update preserved the scheme but added extra fields
@@ -84,6 +130,13 @@ public class Mail {
     @Column(name = "owner_id", insertable = false, updatable = false)
     private Long ownerId;
 
+    @PrePersist
+    @PreUpdate
+    void normalizeSortColumns() {
+        senderSort = sender == null ? null : sender.toLowerCase();
+        subjectSort = subject == null ? null : subject.toLowerCase();
+    }
+
     public Long getMailId() {
         return mailId;
     }
@@ -109,11 +162,32 @@ public class Mail {
     }
 
     public String getBody() {
-        return body;
+        return messageBody != null ? messageBody.getText() : body;
     }
 
+    // Bodies are immutable once shared, so a new body always gets its own row
     public void setBody(String body) {
-        this.body = body;
+        this.messageBody = MessageBody.of(body);
+        this.body = null;
+    }
+
+    public MessageBody getMessageBody() {
+        return messageBody;
+    }
+
+    public void setMessageBody(MessageBody messageBody) {
+        this.messageBody = messageBody;
+    }
+
+    /**
+     * The body row to reference from another copy of this mail
+     * An inline (pre-split) body is moved into its own row first
+     */
+    public MessageBody shareBody() {
+        if (messageBody == null) {
+            setBody(body);
+        }
+        return messageBody;
     }
 
     public String getSubject() {
@@ -0,0 +1,47 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tombstone of a permanently deleted mail
+ * Lets delta sync report removals that no longer exist in the mail table
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "mail_expunges", indexes = {
+        @Index(name = "idx_expunge_owner_modseq", columnList = "owner_id, mod_seq")
+})
+public class MailExpunge {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "mail_id", nullable = false)
+    private Long mailId;
+
+    @Column(name = "mod_seq", nullable = false)
+    private long modSeq;
+
+    // Null for tombstones written before this column existed; those count as old
+    @Column(name = "expunged_at")
+    private LocalDateTime expungedAt;
+}
@@ -0,0 +1,64 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One posting of the search index: a term occurring in one mail copy
+ * All rows of an owner, field and term form that term's posting list; the
+ * lookup index keeps them adjacent, so a term or a term prefix is found with
+ * a range scan instead of reading the mailbox
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "mail_terms", indexes = {
+        // Posting list lookup: exact term or LIKE 'prefix%'
+        @Index(name = "idx_mail_terms_lookup", columnList = "owner_id, field, term, mail_id"),
+        // Pruning when a mail is purged or re-indexed
+        @Index(name = "idx_mail_terms_mail", columnList = "mail_id")
+})
+public class MailTerm {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "mail_term_ids")
+    @TableGenerator(name = "mail_term_ids", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "mail_term", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "mail_id", nullable = false)
+    private Long mailId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private IndexedField field;
+
+    // Lower-cased, cut to MAX_TERM_LENGTH characters
+    @Column(nullable = false, length = 64)
+    private String term;
+
+    // Occurrences of the term in the field
+    @Column(nullable = false)
+    private int frequency;
+
+    // Word positions of the first occurrences, comma separated
+    @Column(length = 400)
+    private String positions;
+}
@@ -0,0 +1,46 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Materialized message counts of one folder of one user
+ * Kept up to date by every write that adds, removes, moves or flags a mail,
+ * so folder badges never need to scan the mail table
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(
+        name = "mailbox_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_counter_owner_folder", columnNames = {"owner_id", "folder_name"})
+)
+public class MailboxCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "folder_name", nullable = false)
+    private String folderName;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Column(nullable = false)
+    private long unread;
+}
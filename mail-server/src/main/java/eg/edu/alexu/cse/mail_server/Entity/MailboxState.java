@@ -0,0 +1,41 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-user mailbox synchronization state
+ * highestModSeq grows by one on every insert, flag change, move or expunge
+ * in the user's mailbox (similar to IMAP CONDSTORE HIGHESTMODSEQ)
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "mailbox_state")
+public class MailboxState {
+
+    @Id
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(name = "highest_mod_seq", nullable = false)
+    private long highestModSeq;
+
+    // Tombstones at or below this mod-sequence were pruned; a client that last synced
+    // below it can no longer learn about every removal and has to sync again from 0
+    @Column(name = "pruned_mod_seq", nullable = false)
+    private long prunedModSeq;
+
+    // Version of the counting rules the user's mailbox_counters were last rebuilt with
+    // (see MailboxCounterService.COUNTERS_VERSION); 0 means never rebuilt
+    @Column(name = "counters_version", nullable = false)
+    private int countersVersion;
+}
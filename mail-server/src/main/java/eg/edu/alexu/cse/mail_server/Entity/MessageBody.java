@@ -0,0 +1,141 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The body of a sent message, written once and shared by every mailbox copy
+ * (the sender's SENT copy, each recipient's INBOX copy and folder copies).
+ * Per-owner state - folder, flags, timestamps - stays on Mail
+ *
+ * Long bodies are kept GZIP-compressed in compressedBody, with the first
+ * characters in snippet for listings; use {@link #of(String)} to create a
+ * body and {@link #getText()} to read it back
+ */
+@Entity
+@Immutable
+@BatchSize(size = 100) // listings that render bodies load them 100 at a time
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "message_bodies")
+public class MessageBody {
+    // Shorter bodies are not worth a compression round trip
+    private static final int COMPRESS_MIN_CHARS = 2048;
+    private static final int SNIPPET_LENGTH = 120;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "message_body_ids")
+    @TableGenerator(name = "message_body_ids", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "message_body", allocationSize = 50)
+    private Long id;
+
+    // Plain text; null when the body is stored compressed
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @Lob
+    @Column(name = "body_gz", columnDefinition = "LONGBLOB")
+    @ToString.Exclude
+    private byte[] compressedBody;
+
+    @Column(length = SNIPPET_LENGTH)
+    private String snippet;
+
+    // Inflated once per loaded entity; searches read the same body repeatedly
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String decodedText;
+
+    @Builder.Default
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    /**
+     * Build a body, compressing it when it is long enough and compresses well
+     */
+    public static MessageBody of(String text) {
+        MessageBody messageBody = new MessageBody();
+        messageBody.setCreatedAt(LocalDateTime.now());
+        if (text == null || text.length() < COMPRESS_MIN_CHARS) {
+            messageBody.setBody(text);
+            return messageBody;
+        }
+
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = gzip(raw);
+        if (compressed.length > raw.length * 9L / 10) {
+            messageBody.setBody(text);
+            return messageBody;
+        }
+        int snippetEnd = SNIPPET_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(snippetEnd - 1))) {
+            snippetEnd--;
+        }
+        messageBody.setCompressedBody(compressed);
+        messageBody.setSnippet(text.substring(0, snippetEnd));
+        messageBody.decodedText = text;
+        return messageBody;
+    }
+
+    /**
+     * The body text, decompressed if it is stored compressed
+     */
+    public String getText() {
+        if (compressedBody == null) {
+            return body;
+        }
+        if (decodedText == null) {
+            decodedText = new String(gunzip(compressedBody), StandardCharsets.UTF_8);
+        }
+        return decodedText;
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(raw.length / 4);
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted compressed message body", e);
+        }
+    }
+}
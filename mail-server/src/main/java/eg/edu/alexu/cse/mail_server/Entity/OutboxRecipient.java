@@ -0,0 +1,63 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Delivery state of one recipient of an outbox entry
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "mail_outbox_recipients")
+public class OutboxRecipient {
+
+    // Pooled IDs so a send's recipient rows go out as one JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "outbox_recipient_ids")
+    @TableGenerator(name = "outbox_recipient_ids", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "outbox_recipient", allocationSize = 50)
+    private Long id;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "outbox_id", nullable = false)
+    private OutboxMessage outbox;
+
+    @Column(name = "receiver_email", nullable = false)
+    private String receiverEmail;
+
+    // Resolved when the mail was sent
+    @Column(name = "receiver_id", nullable = false)
+    private Long receiverId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private DeliveryStatus status;
+
+    // The INBOX copy created for this recipient
+    @Column(name = "delivered_mail_id")
+    private Long deliveredMailId;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
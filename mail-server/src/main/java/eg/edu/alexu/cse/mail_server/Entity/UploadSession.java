@@ -0,0 +1,73 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A large attachment being uploaded in chunks
+ * Chunks are written in place into one part file on disk; receivedBytes is
+ * the offset the next chunk must start at, so a client that lost its
+ * connection asks for it and continues from there. Once complete and
+ * verified the content becomes a blob, and a compose request references the
+ * session by its id instead of sending the file again
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "upload_sessions", indexes = {
+        // Cleanup of abandoned sessions
+        @Index(name = "idx_upload_sessions_updated_at", columnList = "updated_at")
+})
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id; // random UUID, handed to the client
+
+    @Column(name = "owner_email", nullable = false)
+    private String ownerEmail;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    // Declared by the client when the session is created
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    // Optional SHA-256 (hex) the client expects; checked on completion
+    @Column(name = "expected_hash", length = 64)
+    private String expectedHash;
+
+    // SHA-256 of the assembled file, set on completion
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private UploadStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,10 @@
+package eg.edu.alexu.cse.mail_server.Entity;
+
+/**
+ * Progress of a resumable upload session
+ * OPEN accepts chunks; COMPLETED holds a verified blob ready to be attached
+ */
+public enum UploadStatus {
+    OPEN,
+    COMPLETED
+}
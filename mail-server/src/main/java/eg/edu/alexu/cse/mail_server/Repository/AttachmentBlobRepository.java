@@ -0,0 +1,67 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.AttachmentBlob;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String> {
+
+    // Add or drop references in place; returns 0 when the blob has no row yet
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.refCount = b.refCount + :delta WHERE b.contentHash = :contentHash")
+    int adjustRefCount(@Param("contentHash") String contentHash, @Param("delta") long delta);
+
+    // Add references to the blob, creating its row for the first copy of this content;
+    // atomic against a concurrent first upload of the same content
+    @Modifying
+    @Query(value = "INSERT INTO attachment_blobs (content_hash, file_path, file_size, ref_count, indexing_status, created_at) " +
+            "VALUES (:contentHash, :filePath, :fileSize, :delta, :indexingStatus, :createdAt) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + :delta", nativeQuery = true)
+    int upsertRefCount(@Param("contentHash") String contentHash,
+                       @Param("filePath") String filePath,
+                       @Param("fileSize") Long fileSize,
+                       @Param("delta") long delta,
+                       @Param("indexingStatus") String indexingStatus,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    // Compare-and-set on the extraction status; returns 0 when another worker took it
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.indexingStatus = :to WHERE b.contentHash = :contentHash AND b.indexingStatus = :from")
+    int transitionIndexing(@Param("contentHash") String contentHash,
+                           @Param("from") IndexingStatus from,
+                           @Param("to") IndexingStatus to);
+
+    // Extractions interrupted by a shutdown go back to the queue
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.indexingStatus = :to WHERE b.indexingStatus = :from")
+    int resetIndexing(@Param("from") IndexingStatus from, @Param("to") IndexingStatus to);
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.indexingStatus = :pending WHERE b.indexingStatus IS NULL")
+    int queueUnindexed(@Param("pending") IndexingStatus pending);
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.indexedContent = :content, b.indexingStatus = :status " +
+            "WHERE b.contentHash = :contentHash")
+    int saveIndexResult(@Param("contentHash") String contentHash,
+                        @Param("content") String content,
+                        @Param("status") IndexingStatus status);
+
+    @Query("SELECT b.contentHash FROM AttachmentBlob b WHERE b.indexingStatus = :status")
+    List<String> findHashesByIndexingStatus(@Param("status") IndexingStatus status, Pageable pageable);
+
+    // Remove the row only once no attachment references it
+    @Modifying
+    @Query("DELETE FROM AttachmentBlob b WHERE b.contentHash = :contentHash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+}
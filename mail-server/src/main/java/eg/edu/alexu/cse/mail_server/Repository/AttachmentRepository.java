@@ -3,10 +3,15 @@ package eg.edu.alexu.cse.mail_server.Repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import eg.edu.alexu.cse.mail_server.Entity.Attachment;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
 
 
 @Repository
@@ -19,4 +24,26 @@ public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
     List<Attachment> findByMailMailId(Long mailId);
 
     Optional<Attachment> findByStoredFileName(String storedFileName);
+
+    /**
+     * Copy a finished extraction into every still-pending attachment with that content
+     */
+    @Modifying
+    @Query("UPDATE Attachment a SET a.indexedContent = :content, a.indexingStatus = :status " +
+            "WHERE a.contentHash = :contentHash AND a.indexingStatus = :pending")
+    int applyIndexResult(@Param("contentHash") String contentHash,
+                         @Param("content") String content,
+                         @Param("status") IndexingStatus status,
+                         @Param("pending") IndexingStatus pending);
+
+    /**
+     * Content hashes that still have pending attachments although their blob is done
+     * (rows committed while the extraction was finishing)
+     */
+    @Query("SELECT DISTINCT a.contentHash FROM Attachment a, AttachmentBlob b " +
+            "WHERE a.contentHash = b.contentHash AND a.indexingStatus = :pending " +
+            "AND b.indexingStatus IN :finished")
+    List<String> findStalePendingHashes(@Param("pending") IndexingStatus pending,
+                                        @Param("finished") List<IndexingStatus> finished,
+                                        Pageable pageable);
 }
@@ -0,0 +1,35 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.MailExpunge;
+
+@Repository
+public interface MailExpungeRepository extends JpaRepository<MailExpunge, Long> {
+
+    // Tombstones of an owner within (since, upTo], oldest first
+    @Query("SELECT e FROM MailExpunge e WHERE e.ownerId = :ownerId " +
+            "AND e.modSeq > :since AND e.modSeq <= :upTo ORDER BY e.modSeq")
+    List<MailExpunge> findExpungedSince(@Param("ownerId") Long ownerId,
+                                        @Param("since") long since,
+                                        @Param("upTo") long upTo,
+                                        Pageable pageable);
+
+    // Per owner, the newest tombstone old enough to be pruned
+    // Each row is [ownerId, modSeq]
+    @Query("SELECT e.ownerId, MAX(e.modSeq) FROM MailExpunge e " +
+            "WHERE e.expungedAt < :before OR e.expungedAt IS NULL GROUP BY e.ownerId")
+    List<Object[]> findPruneMarks(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM MailExpunge e WHERE e.ownerId = :ownerId AND e.modSeq <= :modSeq")
+    int deleteUpTo(@Param("ownerId") Long ownerId, @Param("modSeq") long modSeq);
+}
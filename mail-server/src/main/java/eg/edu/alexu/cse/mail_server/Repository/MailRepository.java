@@ -1,16 +1,37 @@
 package eg.edu.alexu.cse.mail_server.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.persistence.QueryHint;
+import jakarta.transaction.Transactional;
 
 @Repository
-public interface MailRepository extends JpaRepository<Mail, Long> {
+public interface MailRepository extends JpaRepository<Mail, Long>, JpaSpecificationExecutor<Mail> {
+
+    // Constructor arguments of MailSummaryDto, in declaration order
+    // Queries using it join the shared body as b (pre-split mails keep theirs in m.body,
+    // compressed bodies keep their preview in b.snippet)
+    String SUMMARY_COLUMNS = "m.mailId, m.sender, m.receiver, m.subject, SUBSTRING(COALESCE(b.snippet, b.body, m.body), 1, 120), " +
+            "m.timestamp, m.priority, m.isRead, m.folderName, " +
+            "(SELECT COUNT(a) FROM Attachment a WHERE a.mail = m), m.modSeq";
 
     List<Mail> findByReceiverAndFolderName(String receiver, String folderName);
 
@@ -64,9 +85,88 @@ public interface MailRepository extends JpaRepository<Mail, Long> {
     @Query("SELECT m FROM Mail m WHERE m.mailId = :mailId AND m.ownerId = :ownerId")
     Mail findByMailIdAndOwnerId(@Param("mailId") Long mailId, @Param("ownerId") Long ownerId);
 
-    // Get distinct folder names for a user (excluding system folders)
-    @Query("SELECT DISTINCT m.folderName FROM Mail m WHERE m.ownerId = :ownerId AND m.folderName NOT IN ('INBOX', 'SENT', 'DRAFTS', 'trash')")
-    List<String> findDistinctFolderNamesByOwnerId(@Param("ownerId") Long ownerId);
-
     List<Mail> findByOwnerIdAndFolderNameInOrderByTimestampDesc(Long userId, List<String> primaryFolders);
+
+    // Keyset pagination over (timestamp, mailId) - first page of one or more folders
+    // Projects straight into MailSummaryDto: no body LOB, no attachment rows
+    @Query("SELECT new eg.edu.alexu.cse.mail_server.dto.MailSummaryDto(" + SUMMARY_COLUMNS + ") " +
+            "FROM Mail m LEFT JOIN m.messageBody b WHERE m.ownerId = :ownerId AND m.folderName IN :folders " +
+            "ORDER BY m.timestamp DESC, m.mailId DESC")
+    List<MailSummaryDto> findFolderPage(@Param("ownerId") Long ownerId,
+                                        @Param("folders") List<String> folders,
+                                        Pageable pageable);
+
+    // Keyset pagination - the page that starts right after the given (timestamp, mailId) position
+    @Query("SELECT new eg.edu.alexu.cse.mail_server.dto.MailSummaryDto(" + SUMMARY_COLUMNS + ") " +
+            "FROM Mail m LEFT JOIN m.messageBody b WHERE m.ownerId = :ownerId AND m.folderName IN :folders " +
+            "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.mailId < :mailId)) " +
+            "ORDER BY m.timestamp DESC, m.mailId DESC")
+    List<MailSummaryDto> findFolderPageAfter(@Param("ownerId") Long ownerId,
+                                             @Param("folders") List<String> folders,
+                                             @Param("timestamp") LocalDateTime timestamp,
+                                             @Param("mailId") Long mailId,
+                                             Pageable pageable);
+
+    // Sort engine - one keyset window of a folder ordered by the given sort
+    Window<Mail> findByOwnerIdAndFolderName(Long ownerId, String folderName,
+                                            ScrollPosition position, Sort sort, Limit limit);
+
+    // Summaries of the given mails, in no particular order
+    @Query("SELECT new eg.edu.alexu.cse.mail_server.dto.MailSummaryDto(" + SUMMARY_COLUMNS + ") " +
+            "FROM Mail m LEFT JOIN m.messageBody b WHERE m.mailId IN :mailIds")
+    List<MailSummaryDto> findSummariesByIds(@Param("mailIds") Collection<Long> mailIds);
+
+    // Optimistic draft save: takes the next version only if the caller saw the current one
+    @Modifying
+    @Query("UPDATE Mail m SET m.draftVersion = m.draftVersion + 1 " +
+            "WHERE m.mailId = :draftId AND m.folderName = 'DRAFTS' AND m.draftVersion = :version")
+    int bumpDraftVersion(@Param("draftId") Long draftId, @Param("version") long version);
+
+    boolean existsByMailIdAndFolderName(Long mailId, String folderName);
+
+    // Fill normalized sort columns for rows written before they existed
+    @Modifying
+    @Transactional
+    @Query("UPDATE Mail m SET m.senderSort = LOWER(m.sender), m.subjectSort = LOWER(m.subject) " +
+            "WHERE m.senderSort IS NULL OR m.subjectSort IS NULL")
+    int backfillSortColumns();
+
+    // Per folder totals of one owner, used to rebuild mailbox_counters
+    // Each row is [folderName, total, unread]
+    @Query("SELECT m.folderName, COUNT(m), SUM(CASE WHEN m.isRead = false THEN 1 ELSE 0 END) " +
+            "FROM Mail m WHERE m.ownerId = :ownerId GROUP BY m.folderName")
+    List<Object[]> countByFolder(@Param("ownerId") Long ownerId);
+
+    // Owners with mails whose counters were not rebuilt with the given version yet
+    @Query("SELECT DISTINCT m.ownerId FROM Mail m WHERE NOT EXISTS (SELECT s.ownerId FROM MailboxState s " +
+            "WHERE s.ownerId = m.ownerId AND s.countersVersion >= :version)")
+    List<Long> findOwnerIdsWithCountersBefore(@Param("version") int version);
+
+    // Delta sync - mails of an owner stamped within (since, upTo], oldest change first
+    @Query("SELECT new eg.edu.alexu.cse.mail_server.dto.MailSummaryDto(" + SUMMARY_COLUMNS + ") " +
+            "FROM Mail m LEFT JOIN m.messageBody b WHERE m.ownerId = :ownerId AND m.modSeq > :since AND m.modSeq <= :upTo " +
+            "ORDER BY m.modSeq")
+    List<MailSummaryDto> findChangedSince(@Param("ownerId") Long ownerId,
+                                          @Param("since") long since,
+                                          @Param("upTo") long upTo,
+                                          Pageable pageable);
+
+    // Owners with mails stored before mod-sequences existed
+    @Query("SELECT DISTINCT m.ownerId FROM Mail m WHERE m.modSeq = 0")
+    List<Long> findOwnerIdsWithoutModSeq();
+
+    @Query("SELECT m.mailId FROM Mail m WHERE m.ownerId = :ownerId AND m.modSeq = 0 ORDER BY m.mailId")
+    List<Long> findIdsWithoutModSeq(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Mail m SET m.modSeq = :modSeq WHERE m.mailId = :mailId AND m.modSeq = 0")
+    int assignModSeq(@Param("mailId") Long mailId, @Param("modSeq") long modSeq);
+
+    // Streaming reads for large responses - rows are fetched from a cursor in batches
+    // instead of being materialized as one list (MySQL needs useCursorFetch=true on the JDBC URL)
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    Stream<Mail> streamByOwnerIdAndFolderNameInOrderByTimestampDesc(Long ownerId, List<String> folderNames);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    Stream<Mail> streamByOwnerIdOrderByTimestampDesc(Long ownerId);
 }
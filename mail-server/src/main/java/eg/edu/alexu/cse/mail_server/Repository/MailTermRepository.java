@@ -0,0 +1,34 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.IndexedField;
+import eg.edu.alexu.cse.mail_server.Entity.MailTerm;
+
+@Repository
+public interface MailTermRepository extends JpaRepository<MailTerm, Long> {
+
+    // Mails of an owner with a term starting with the prefix (LIKE wildcards escaped with '!')
+    @Query("SELECT DISTINCT t.mailId FROM MailTerm t " +
+            "WHERE t.ownerId = :ownerId AND t.field = :field AND t.term LIKE :prefix ESCAPE '!'")
+    List<Long> findMailIdsByTermPrefix(@Param("ownerId") Long ownerId,
+                                       @Param("field") IndexedField field,
+                                       @Param("prefix") String prefix);
+
+    @Modifying
+    @Query("DELETE FROM MailTerm t WHERE t.mailId IN :mailIds")
+    int deleteByMailIds(@Param("mailIds") Collection<Long> mailIds);
+
+    // Mails written before the index existed, in ID order after the given ID
+    @Query("SELECT m.mailId FROM Mail m WHERE m.mailId > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM MailTerm t WHERE t.mailId = m.mailId) ORDER BY m.mailId")
+    List<Long> findUnindexedMailIds(@Param("afterId") Long afterId, Pageable pageable);
+}
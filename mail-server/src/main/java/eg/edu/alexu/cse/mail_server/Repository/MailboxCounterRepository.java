@@ -0,0 +1,75 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.MailboxCounter;
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
+
+@Repository
+public interface MailboxCounterRepository extends JpaRepository<MailboxCounter, Long> {
+
+    // Apply a delta in place; returns 0 when the folder has no counter row yet
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.total = c.total + :total, c.unread = c.unread + :unread " +
+            "WHERE c.ownerId = :ownerId AND c.folderName = :folderName")
+    int adjust(@Param("ownerId") Long ownerId,
+               @Param("folderName") String folderName,
+               @Param("total") long total,
+               @Param("unread") long unread);
+
+    // Apply a delta, creating the folder's row if it has none; atomic against a concurrent first write
+    @Modifying
+    @Query(value = "INSERT INTO mailbox_counters (owner_id, folder_name, total, unread) " +
+            "VALUES (:ownerId, :folderName, GREATEST(:total, 0), GREATEST(:unread, 0)) " +
+            "ON DUPLICATE KEY UPDATE total = total + :total, unread = unread + :unread", nativeQuery = true)
+    int upsert(@Param("ownerId") Long ownerId,
+               @Param("folderName") String folderName,
+               @Param("total") long total,
+               @Param("unread") long unread);
+
+    // Overwrite a folder's counts (rebuild), creating its row if needed
+    @Modifying
+    @Query(value = "INSERT INTO mailbox_counters (owner_id, folder_name, total, unread) " +
+            "VALUES (:ownerId, :folderName, :total, :unread) " +
+            "ON DUPLICATE KEY UPDATE total = :total, unread = :unread", nativeQuery = true)
+    int setCounts(@Param("ownerId") Long ownerId,
+                  @Param("folderName") String folderName,
+                  @Param("total") long total,
+                  @Param("unread") long unread);
+
+    // Zero every folder of a user before its counts are rebuilt
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.total = 0, c.unread = 0 WHERE c.ownerId = :ownerId")
+    int clearOwner(@Param("ownerId") Long ownerId);
+
+    // Same delta for several owners' copy of one folder (one fan-out)
+    @Modifying
+    @Query("UPDATE MailboxCounter c SET c.total = c.total + :total, c.unread = c.unread + :unread " +
+            "WHERE c.ownerId IN :ownerIds AND c.folderName = :folderName")
+    int adjustAll(@Param("ownerIds") Collection<Long> ownerIds,
+                  @Param("folderName") String folderName,
+                  @Param("total") long total,
+                  @Param("unread") long unread);
+
+    // Which of the given owners already have a counter row for the folder
+    @Query("SELECT c.ownerId FROM MailboxCounter c WHERE c.ownerId IN :ownerIds AND c.folderName = :folderName")
+    List<Long> findOwnerIdsWithFolder(@Param("ownerIds") Collection<Long> ownerIds,
+                                      @Param("folderName") String folderName);
+
+    // Every folder of a user with its counts - a single read on the (owner_id, folder_name) key
+    @Query("SELECT new eg.edu.alexu.cse.mail_server.dto.FolderCountDto(c.folderName, c.total, c.unread) " +
+            "FROM MailboxCounter c WHERE c.ownerId = :ownerId ORDER BY c.folderName")
+    List<FolderCountDto> findSummaryByOwnerId(@Param("ownerId") Long ownerId);
+
+    // Non-empty user-defined folders (excluding system folders)
+    @Query("SELECT c.folderName FROM MailboxCounter c WHERE c.ownerId = :ownerId AND c.total > 0 " +
+            "AND c.folderName NOT IN ('INBOX', 'SENT', 'DRAFTS', 'trash') ORDER BY c.folderName")
+    List<String> findCustomFolderNamesByOwnerId(@Param("ownerId") Long ownerId);
+}
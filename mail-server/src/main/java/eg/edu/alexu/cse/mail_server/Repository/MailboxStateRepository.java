@@ -0,0 +1,56 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.MailboxState;
+
+@Repository
+public interface MailboxStateRepository extends JpaRepository<MailboxState, Long> {
+
+    // Atomically bump the sequence; the row stays locked until the transaction ends
+    // Returns 0 when the user has no state row yet
+    @Modifying
+    @Query("UPDATE MailboxState s SET s.highestModSeq = s.highestModSeq + 1 WHERE s.ownerId = :ownerId")
+    int increment(@Param("ownerId") Long ownerId);
+
+    // Bump several users at once (one fan-out); same locking as increment
+    @Modifying
+    @Query("UPDATE MailboxState s SET s.highestModSeq = s.highestModSeq + :delta WHERE s.ownerId IN :ownerIds")
+    int incrementAll(@Param("ownerIds") Collection<Long> ownerIds, @Param("delta") long delta);
+
+    // Bump by delta, creating the row for a user's first change; atomic against a concurrent first write
+    @Modifying
+    @Query(value = "INSERT INTO mailbox_state (owner_id, highest_mod_seq, pruned_mod_seq, counters_version) " +
+            "VALUES (:ownerId, :delta, 0, 0) " +
+            "ON DUPLICATE KEY UPDATE highest_mod_seq = highest_mod_seq + :delta", nativeQuery = true)
+    int upsert(@Param("ownerId") Long ownerId, @Param("delta") long delta);
+
+    // [ownerId, highestModSeq] rows, read as scalars like findHighestModSeq
+    @Query("SELECT s.ownerId, s.highestModSeq FROM MailboxState s WHERE s.ownerId IN :ownerIds")
+    List<Object[]> findHighestModSeqs(@Param("ownerIds") Collection<Long> ownerIds);
+
+    // Scalar read so the value always comes from the database, not the persistence context
+    @Query("SELECT s.highestModSeq FROM MailboxState s WHERE s.ownerId = :ownerId")
+    Long findHighestModSeq(@Param("ownerId") Long ownerId);
+
+    @Query("SELECT s.prunedModSeq FROM MailboxState s WHERE s.ownerId = :ownerId")
+    Long findPrunedModSeq(@Param("ownerId") Long ownerId);
+
+    // Only ever raises the mark
+    @Modifying
+    @Query("UPDATE MailboxState s SET s.prunedModSeq = :modSeq WHERE s.ownerId = :ownerId AND s.prunedModSeq < :modSeq")
+    int raisePrunedModSeq(@Param("ownerId") Long ownerId, @Param("modSeq") long modSeq);
+
+    // Claim a user's counter rebuild for a version; the row stays locked until the transaction ends
+    // Returns 0 when the counters were already rebuilt with this version
+    @Modifying
+    @Query("UPDATE MailboxState s SET s.countersVersion = :version WHERE s.ownerId = :ownerId AND s.countersVersion < :version")
+    int claimCountersVersion(@Param("ownerId") Long ownerId, @Param("version") int version);
+}
@@ -0,0 +1,21 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.util.Collection;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.MessageBody;
+
+@Repository
+public interface MessageBodyRepository extends JpaRepository<MessageBody, Long> {
+
+    // Drop the given bodies once no mailbox copy references them any more
+    @Modifying
+    @Query("DELETE FROM MessageBody b WHERE b.id IN :ids " +
+            "AND NOT EXISTS (SELECT 1 FROM Mail m WHERE m.messageBody = b)")
+    int deleteUnreferenced(@Param("ids") Collection<Long> ids);
+}
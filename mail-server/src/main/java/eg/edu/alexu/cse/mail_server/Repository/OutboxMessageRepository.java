@@ -0,0 +1,68 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.DeliveryStatus;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxMessage;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // Entries a worker may take: pending and due, or claimed by a worker that never finished
+    @Query("SELECT o.id FROM OutboxMessage o " +
+            "WHERE (o.status = :pending AND o.nextAttemptAt <= :now) " +
+            "OR (o.status = :delivering AND o.claimedAt < :staleBefore) " +
+            "ORDER BY o.nextAttemptAt")
+    List<Long> findDueIds(@Param("pending") DeliveryStatus pending,
+                          @Param("delivering") DeliveryStatus delivering,
+                          @Param("now") LocalDateTime now,
+                          @Param("staleBefore") LocalDateTime staleBefore,
+                          Pageable pageable);
+
+    // Compare-and-set claim; returns 0 when another worker got there first
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.status = :delivering, o.claimedAt = :now " +
+            "WHERE o.id = :id AND ((o.status = :pending AND o.nextAttemptAt <= :now) " +
+            "OR (o.status = :delivering AND o.claimedAt < :staleBefore))")
+    int claim(@Param("id") Long id,
+              @Param("pending") DeliveryStatus pending,
+              @Param("delivering") DeliveryStatus delivering,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Fence for a delivery attempt: matches only while this worker's claim is current, and the
+    // row lock it takes keeps any other worker from claiming the entry until the attempt ends
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.claimedAt = :claimedAt " +
+            "WHERE o.id = :id AND o.status = :delivering AND o.claimedAt = :claimedAt")
+    int holdClaim(@Param("id") Long id,
+                  @Param("delivering") DeliveryStatus delivering,
+                  @Param("claimedAt") LocalDateTime claimedAt);
+
+    // Finished entries old enough to be dropped by the retention job
+    @Query("SELECT o.id FROM OutboxMessage o WHERE o.status IN :finished AND o.completedAt < :before")
+    List<Long> findFinishedIds(@Param("finished") Collection<DeliveryStatus> finished,
+                               @Param("before") LocalDateTime before,
+                               Pageable pageable);
+
+    // Entries of sent copies that are being purged; recipients first, they reference the entry
+    @Query("SELECT o.id FROM OutboxMessage o WHERE o.sentMail.mailId IN :mailIds")
+    List<Long> findIdsBySentMailIds(@Param("mailIds") Collection<Long> mailIds);
+
+    @Modifying
+    @Query("DELETE FROM OutboxRecipient r WHERE r.outbox.id IN :ids")
+    int deleteRecipientsByOutboxIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM OutboxMessage o WHERE o.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,58 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import eg.edu.alexu.cse.mail_server.Entity.UploadSession;
+import eg.edu.alexu.cse.mail_server.Entity.UploadStatus;
+import jakarta.transaction.Transactional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Record a written chunk; only applies if no other chunk moved the offset meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.receivedBytes = :receivedBytes, u.updatedAt = :now " +
+            "WHERE u.id = :id AND u.status = :open AND u.receivedBytes = :offset")
+    int recordChunk(@Param("id") String id,
+                    @Param("offset") long offset,
+                    @Param("receivedBytes") long receivedBytes,
+                    @Param("open") UploadStatus open,
+                    @Param("now") LocalDateTime now);
+
+    // Start over after a checksum mismatch
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.receivedBytes = 0, u.updatedAt = :now WHERE u.id = :id")
+    int resetProgress(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.status = :completed, u.contentHash = :contentHash, u.updatedAt = :now " +
+            "WHERE u.id = :id AND u.status = :open")
+    int markCompleted(@Param("id") String id,
+                      @Param("contentHash") String contentHash,
+                      @Param("open") UploadStatus open,
+                      @Param("completed") UploadStatus completed,
+                      @Param("now") LocalDateTime now);
+
+    // Hand a completed upload to a compose request; 0 if it is gone or not completed
+    @Modifying
+    @Query("DELETE FROM UploadSession u WHERE u.id = :id AND u.status = :completed")
+    int deleteCompleted(@Param("id") String id, @Param("completed") UploadStatus completed);
+
+    // Drop an abandoned session unless it was used or touched meanwhile
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSession u WHERE u.id = :id AND u.updatedAt < :cutoff")
+    int deleteIfStale(@Param("id") String id, @Param("cutoff") LocalDateTime cutoff);
+
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+}
@@ -4,6 +4,8 @@ import eg.edu.alexu.cse.mail_server.Entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +13,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    // Resolve many addresses in one query (e.g. all receivers of a mail)
+    List<User> findByEmailIn(Collection<String> emails);
+
     //User findByEmail(String email);
 
     User findById(long id);
@@ -0,0 +1,139 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import eg.edu.alexu.cse.mail_server.Entity.AttachmentBlob;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Extracts attachment text for search in the background, once per distinct content
+ *
+ * Extraction runs on a small fixed pool (mail.indexing.threads) with a
+ * bounded queue; work that does not fit stays PENDING in the database and
+ * is picked up by the periodic sweep. Each document gets at most
+ * mail.indexing.timeout-ms, and files above mail.indexing.max-file-bytes
+ * are skipped. Results land on the blob and on every attachment sharing it
+ */
+@Component
+@RequiredArgsConstructor
+public class AttachmentIndexer {
+    // Same cap the synchronous extraction used, to keep rows a reasonable size
+    private static final int MAX_TEXT_LENGTH = 50000;
+
+    private final AttachmentService attachmentService;
+    private final FileStorageService fileStorageService;
+    private final Tika tika = new Tika();
+    // Parses run here so a worker can stop waiting on one that hangs
+    private final ExecutorService parsers = Executors.newVirtualThreadPerTaskExecutor();
+    private ThreadPoolExecutor workers;
+
+    @Value("${mail.indexing.threads:2}")
+    private int threads;
+
+    @Value("${mail.indexing.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${mail.indexing.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${mail.indexing.max-file-bytes:52428800}")
+    private long maxFileBytes;
+
+    @PostConstruct
+    public void init() {
+        // A full queue drops the task; the blob stays PENDING for the sweep
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttachmentStored(AttachmentStoredEvent event) {
+        submit(event.contentHash());
+    }
+
+    @Scheduled(fixedDelayString = "${mail.indexing.sweep-ms:60000}")
+    public void sweep() {
+        attachmentService.applyFinishedIndexResults(queueCapacity);
+        int room = workers.getQueue().remainingCapacity();
+        if (room > 0) {
+            attachmentService.findPendingIndexing(room).forEach(this::submit);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted extractions are requeued on the next start
+        workers.shutdownNow();
+        parsers.shutdownNow();
+    }
+
+    private void submit(String contentHash) {
+        if (!workers.isShutdown()) {
+            workers.execute(() -> index(contentHash));
+        }
+    }
+
+    private void index(String contentHash) {
+        AttachmentBlob blob = attachmentService.claimIndexing(contentHash);
+        if (blob == null) {
+            return;
+        }
+
+        // Until a result is stored the blob is INDEXING, which nothing but a restart would requeue
+        boolean saved = false;
+        try {
+            String text = "";
+            IndexingStatus status;
+            if (blob.getFileSize() != null && blob.getFileSize() > maxFileBytes) {
+                status = IndexingStatus.SKIPPED;
+            } else {
+                try {
+                    text = extract(blob.getFilePath());
+                    status = IndexingStatus.INDEXED;
+                } catch (Exception e) {
+                    // Unsupported format, corrupted file or timeout - searchable by file name only
+                    System.err.println("Failed to extract text from blob " + contentHash + " - " + e);
+                    status = IndexingStatus.FAILED;
+                }
+            }
+            attachmentService.saveIndexResult(contentHash, text, status);
+            saved = true;
+        } finally {
+            if (!saved) {
+                System.err.println("Could not store the index result of blob " + contentHash + ", requeued");
+                attachmentService.releaseIndexing(contentHash);
+            }
+        }
+    }
+
+    private String extract(String filePath) throws Exception {
+        Future<String> parse = parsers.submit(() -> {
+            // Compressed blobs are inflated as Tika reads them
+            try (InputStream stream = fileStorageService.openStoredFile(filePath)) {
+                return tika.parseToString(stream, new Metadata(), MAX_TEXT_LENGTH);
+            }
+        });
+        try {
+            return parse.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            parse.cancel(true);
+        }
+    }
+}
@@ -1,27 +1,51 @@
 package eg.edu.alexu.cse.mail_server.Service;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import eg.edu.alexu.cse.mail_server.Entity.Attachment;
+import eg.edu.alexu.cse.mail_server.Entity.AttachmentBlob;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.UploadSession;
+import eg.edu.alexu.cse.mail_server.Repository.AttachmentBlobRepository;
 import eg.edu.alexu.cse.mail_server.Repository.AttachmentRepository;
 import eg.edu.alexu.cse.mail_server.dto.AttachmentDTO;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 
 
 @Service
 @RequiredArgsConstructor
 public class AttachmentService {
+    private static final String DOWNLOAD_URL_PREFIX = "/api/mail/attachments/id/";
+
     private final AttachmentRepository attachmentRepository;
+    private final AttachmentBlobRepository blobRepository;
     private final FileStorageService fileStorageService;
+    private final BlobLocks blobLocks;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Largest file that may be embedded as Base64 when a client asks for inline data
+    @Value("${mail.attachments.inline-max-bytes:262144}")
+    private long inlineMaxBytes;
 
     /**
      * Save attachment file to disk and persist metadata to database
@@ -31,16 +55,164 @@ public class AttachmentService {
      * @return Saved attachment entity
      * @throws IOException if file operations fail
      */
+    @Transactional
     public Attachment saveAttachment(MultipartFile file, Mail mail) throws IOException {
-        // Use FileStorageService to handle file system operations
-        Attachment attachment = fileStorageService.saveFile(file, mail);
-        
-        // Extract text content for searching (optional)
-        String indexedContent = extractTextContent(file);
-        attachment.setIndexedContent(indexedContent);
-        
+        return saveAttachment(file, List.of(mail)).get(0);
+    }
+
+    /**
+     * Attach one uploaded file to several mails (e.g. the sent copy and every inbox copy)
+     * The content is written once and each mail gets its own Attachment row
+     * referencing the shared blob. Text extraction runs in the background
+     * (AttachmentIndexer) unless this content was already extracted
+     *
+     * @param file The multipart file to save
+     * @param mails The mails that carry the file
+     * @return Saved attachment entities, in the order of mails
+     * @throws IOException if file operations fail
+     */
+    @Transactional
+    public List<Attachment> saveAttachment(MultipartFile file, List<Mail> mails) throws IOException {
+        FileStorageService.StagedBlob staged = fileStorageService.stageBlob(file);
+        try {
+            blobLocks.lockUntilCompletion(staged.contentHash());
+            FileStorageService.StoredBlob stored = fileStorageService.placeBlob(staged);
+            return attachBlob(stored, file.getOriginalFilename(), file.getContentType(), mails);
+        } finally {
+            fileStorageService.discardStaged(staged);
+        }
+    }
+
+    /**
+     * Attach a completed resumable upload to a mail
+     * The content is already a blob on disk, so nothing is read or copied here
+     *
+     * @param upload a COMPLETED upload session
+     * @param mail The mail that carries the file
+     * @return Saved attachment entity
+     */
+    @Transactional
+    public Attachment attachUpload(UploadSession upload, Mail mail) {
+        // The blob may have been purged since the upload completed, if other mails shared it
+        blobLocks.lockUntilCompletion(upload.getContentHash());
+        Path blobFile = fileStorageService.findBlobFile(upload.getContentHash());
+        if (blobFile == null) {
+            throw new IllegalArgumentException("Upload " + upload.getId() + " is no longer available, upload it again");
+        }
+        FileStorageService.StoredBlob stored = new FileStorageService.StoredBlob(
+                upload.getContentHash(), upload.getTotalSize(), blobFile.toString());
+        return attachBlob(stored, upload.getFileName(), upload.getContentType(), List.of(mail)).get(0);
+    }
+
+    private List<Attachment> attachBlob(FileStorageService.StoredBlob stored, String originalFilename,
+                                        String contentType, List<Mail> mails) {
+        String contentHash = stored.contentHash();
+        AttachmentBlob blob = acquireBlob(stored, mails.size());
+
+        if (originalFilename == null || originalFilename.isEmpty()) {
+            originalFilename = "unnamed_file";
+        }
+
+        // Reuse the text of content seen before; otherwise queue extraction for after commit
+        IndexingStatus indexingStatus = blob.getIndexingStatus();
+        String indexedContent = blob.getIndexedContent();
+        if (!isIndexingFinished(indexingStatus)) {
+            indexingStatus = IndexingStatus.PENDING;
+            indexedContent = null;
+            eventPublisher.publishEvent(new AttachmentStoredEvent(contentHash));
+        }
+
+        List<Attachment> attachments = new ArrayList<>();
+        for (Mail mail : mails) {
+            attachments.add(Attachment.builder()
+                    .fileName(originalFilename)
+                    .storedFileName(UUID.randomUUID() + "_" + originalFilename)
+                    .contentType(contentType)
+                    .fileSize(stored.size())
+                    .contentHash(contentHash)
+                    .blob(blob)
+                    .indexedContent(indexedContent)
+                    .indexingStatus(indexingStatus)
+                    .uploadDate(LocalDateTime.now())
+                    .mail(mail)
+                    .build());
+        }
+
         // Save attachment metadata to database
-        return attachmentRepository.save(attachment);
+        return attachmentRepository.saveAll(attachments);
+    }
+
+    /**
+     * Give mails their own references to existing attachments without copying any file
+     *
+     * @param originals attachments of the source mail
+     * @param mails the mails receiving the references (e.g. a folder copy or every inbox copy)
+     * @return Saved attachment entities
+     * @throws IOException if a pre-blob file cannot be hashed
+     */
+    @Transactional
+    public List<Attachment> copyAttachments(List<Attachment> originals, List<Mail> mails) throws IOException {
+        List<Attachment> copies = new ArrayList<>();
+        for (Attachment original : originals) {
+            AttachmentBlob blob = original.getBlob() != null ? original.getBlob() : adoptLegacyFile(original);
+            blobRepository.adjustRefCount(blob.getContentHash(), mails.size());
+            for (Mail mail : mails) {
+                copies.add(Attachment.builder()
+                        .fileName(original.getFileName())
+                        .storedFileName(UUID.randomUUID() + "_" + original.getFileName())
+                        .contentType(original.getContentType())
+                        .fileSize(original.getFileSize())
+                        .contentHash(blob.getContentHash())
+                        .blob(blob)
+                        .indexedContent(original.getIndexedContent())
+                        .indexingStatus(original.getIndexingStatus() != null
+                                ? original.getIndexingStatus() : blob.getIndexingStatus())
+                        .uploadDate(LocalDateTime.now())
+                        .mail(mail)
+                        .build());
+            }
+        }
+        return attachmentRepository.saveAll(copies);
+    }
+
+    /**
+     * Drop the file references of attachments whose mail is being deleted
+     * Only the reference counts change here: the attachment rows still point
+     * at their blobs until the mails are deleted and flushed, so the caller
+     * passes the returned hashes to {@link #deleteUnreferencedBlobs} after that
+     *
+     * @param attachments attachments of the mail being deleted
+     * @return content hashes whose blob may have lost its last reference
+     */
+    @Transactional
+    public Set<String> releaseAttachments(List<Attachment> attachments) {
+        Set<String> released = new HashSet<>();
+        for (Attachment attachment : attachments) {
+            AttachmentBlob blob = attachment.getBlob();
+            if (blob == null) {
+                deleteAfterCommit(attachment.getFilePath(), null);
+                continue;
+            }
+            blobRepository.adjustRefCount(blob.getContentHash(), -1);
+            released.add(blob.getContentHash());
+        }
+        return released;
+    }
+
+    /**
+     * Delete the blobs left without references, once no attachment row points at them
+     * Files are only removed from disk after the transaction commits
+     *
+     * @param contentHashes hashes returned by {@link #releaseAttachments}
+     */
+    @Transactional
+    public void deleteUnreferencedBlobs(Collection<String> contentHashes) {
+        for (String contentHash : contentHashes) {
+            AttachmentBlob blob = blobRepository.findById(contentHash).orElse(null);
+            if (blob != null && blobRepository.deleteIfUnreferenced(contentHash) > 0) {
+                deleteAfterCommit(blob.getFilePath(), contentHash);
+            }
+        }
     }
 
     /**
@@ -54,37 +226,48 @@ public class AttachmentService {
     }
 
     /**
-     * Get all attachments with file data for a specific mail
-     * This method reads the actual file content and encodes it as Base64
-     * for sending to the frontend
+     * Get attachment descriptors for a specific mail
+     * Descriptors carry metadata and a download URL; the bytes are streamed
+     * by AttachmentController. With inline = true, files no larger than
+     * mail.attachments.inline-max-bytes also carry their content as Base64
      *
      * @param mailId the ID of the mail
-     * @return list of AttachmentDTOs with file data included
-     * @throws IOException if file reading fails
+     * @param inline whether small files should embed their content
+     * @return list of AttachmentDTOs
+     * @throws IOException if reading an inlined file fails
      */
-    public List<AttachmentDTO> getAttachmentsWithData(Long mailId) throws IOException {
-        List<Attachment> attachments = getAttachmentsByMailId(mailId);
+    public List<AttachmentDTO> getAttachmentDescriptors(Long mailId, boolean inline) throws IOException {
         List<AttachmentDTO> attachmentDTOs = new ArrayList<>();
+        for (Attachment attachment : getAttachmentsByMailId(mailId)) {
+            attachmentDTOs.add(toDescriptor(attachment, inline));
+        }
+        return attachmentDTOs;
+    }
 
-        for (Attachment attachment : attachments) {
+    /**
+     * Build the descriptor of one attachment
+     *
+     * @param attachment the attachment entity
+     * @param inline whether to embed the content if the file is small enough
+     * @return AttachmentDTO, with fileData only for inlined files
+     * @throws IOException if reading an inlined file fails
+     */
+    public AttachmentDTO toDescriptor(Attachment attachment, boolean inline) throws IOException {
+        AttachmentDTO dto = AttachmentDTO.builder()
+                .id(attachment.getId())
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .fileSize(attachment.getFileSize())
+                .contentHash(attachment.getContentHash())
+                .downloadUrl(DOWNLOAD_URL_PREFIX + attachment.getId())
+                .build();
 
+        Long size = attachment.getFileSize();
+        if (inline && size != null && size <= inlineMaxBytes) {
             byte[] fileData = readAttachmentFile(attachment.getFilePath());
-
-            // Encode to Base64 for JSON transfer
-            String base64Data = java.util.Base64.getEncoder().encodeToString(fileData);
-
-            AttachmentDTO dto = AttachmentDTO.builder()
-                    .id(attachment.getId())
-                    .fileName(attachment.getFileName())
-                    .contentType(attachment.getContentType())
-                    .fileSize(attachment.getFileSize())
-                    .fileData(base64Data)
-                    .build();
-
-            attachmentDTOs.add(dto);
+            dto.setFileData(java.util.Base64.getEncoder().encodeToString(fileData));
         }
-
-        return attachmentDTOs;
+        return dto;
     }
 
     /**
@@ -95,8 +278,7 @@ public class AttachmentService {
         Attachment attachment = attachmentRepository.findById(attachmentId)
                 .orElseThrow(() -> new RuntimeException("Attachment not found"));
 
-        Path path = Paths.get(attachment.getFilePath());
-        return Files.readAllBytes(path);
+        return readAttachmentFile(attachment.getFilePath());
     }
 
     /**
@@ -109,33 +291,142 @@ public class AttachmentService {
         return fileStorageService.readFileBytes(filePath);
     }
 
+    // Existing content only gains references; new content gets its row, even if another upload races it
+    private AttachmentBlob acquireBlob(FileStorageService.StoredBlob stored, long references) {
+        if (blobRepository.adjustRefCount(stored.contentHash(), references) == 0) {
+            blobRepository.upsertRefCount(stored.contentHash(), stored.filePath(), stored.size(), references,
+                    IndexingStatus.PENDING.name(), LocalDateTime.now());
+        }
+        return blobRepository.getReferenceById(stored.contentHash());
+    }
+
+    // Turn a per-mail file stored before blobs existed into a blob owned by its attachment
+    // Its text was extracted when it was uploaded, so it counts as INDEXED even when empty
+    private AttachmentBlob adoptLegacyFile(Attachment attachment) throws IOException {
+        String filePath = attachment.getFilePath();
+        String contentHash = attachment.getContentHash() != null
+                ? attachment.getContentHash()
+                : fileStorageService.hashFile(filePath);
+
+        AttachmentBlob blob;
+        if (blobRepository.adjustRefCount(contentHash, 1) > 0) {
+            // Same content already stored as a blob - the per-mail file is no longer needed
+            blob = blobRepository.getReferenceById(contentHash);
+            deleteAfterCommit(filePath, null);
+        } else {
+            blob = blobRepository.save(AttachmentBlob.builder()
+                    .contentHash(contentHash)
+                    .filePath(filePath)
+                    .fileSize(attachment.getFileSize())
+                    .refCount(1)
+                    .indexedContent(attachment.getIndexedContent())
+                    .indexingStatus(IndexingStatus.INDEXED)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        attachment.setContentHash(contentHash);
+        attachment.setBlob(blob);
+        attachment.setFilePath(null);
+        if (attachment.getIndexingStatus() == null) {
+            attachment.setIndexingStatus(IndexingStatus.INDEXED);
+        }
+        attachmentRepository.save(attachment);
+        return blob;
+    }
+
+    // A rolled-back delete must not lose the file. A blob file is only deleted under its
+    // BlobLocks lock: a writer reusing it holds that lock until its own row is committed,
+    // so the existence check below sees that row and keeps the file
+    private void deleteAfterCommit(String filePath, String contentHash) {
+        if (filePath == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (contentHash == null) {
+                    deleteQuietly(filePath);
+                    return;
+                }
+                blobLocks.runLocked(contentHash, () -> {
+                    if (!blobRepository.existsById(contentHash)) {
+                        deleteQuietly(filePath);
+                    }
+                });
+            }
+        });
+    }
+
+    private void deleteQuietly(String filePath) {
+        try {
+            fileStorageService.deleteFile(filePath);
+        } catch (IOException e) {
+            System.err.println("Failed to delete attachment file: " + filePath + " - " + e.getMessage());
+        }
+    }
+
     /**
-     * Extract text content from attachment file for search indexing
-     * Uses Apache Tika to parse various file formats (PDF, DOCX, TXT, etc.)
+     * Take a pending blob for text extraction
      *
-     * @param file the file to extract text from
-     * @return extracted text content, or empty string if extraction fails
+     * @return the blob, or null if it is not pending (already taken or done)
      */
-    private String extractTextContent(MultipartFile file) {
-        try {
-            // Use Apache Tika to extract text from various file formats
-            org.apache.tika.Tika tika = new org.apache.tika.Tika();
+    @Transactional
+    public AttachmentBlob claimIndexing(String contentHash) {
+        if (blobRepository.transitionIndexing(contentHash, IndexingStatus.PENDING, IndexingStatus.INDEXING) == 0) {
+            return null;
+        }
+        return blobRepository.findById(contentHash).orElse(null);
+    }
 
-            // Parse the file and extract text content
-            String content = tika.parseToString(file.getInputStream());
+    /**
+     * Give back a claim whose result could not be stored, so the sweep retries it
+     */
+    @Transactional
+    public void releaseIndexing(String contentHash) {
+        blobRepository.transitionIndexing(contentHash, IndexingStatus.INDEXING, IndexingStatus.PENDING);
+    }
 
-            // Limit content size to avoid database issues (e.g., 50KB of text)
-            if (content.length() > 50000) {
-                content = content.substring(0, 50000);
-            }
+    /**
+     * Store an extraction result on the blob and on every pending attachment with that content
+     */
+    @Transactional
+    public void saveIndexResult(String contentHash, String indexedContent, IndexingStatus status) {
+        blobRepository.saveIndexResult(contentHash, indexedContent, status);
+        attachmentRepository.applyIndexResult(contentHash, indexedContent, status, IndexingStatus.PENDING);
+    }
 
-            return content;
-        } catch (Exception e) {
-            // If extraction fails (unsupported format, corrupted file, etc.)
-            // Return empty string to gracefully handle the error
-            System.err.println("Failed to extract text from file: " + file.getOriginalFilename() + " - " + e.getMessage());
-            return "";
+    /**
+     * Blobs still waiting for extraction (queued work lost to a restart or a full queue)
+     */
+    public List<String> findPendingIndexing(int limit) {
+        return blobRepository.findHashesByIndexingStatus(IndexingStatus.PENDING, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Fill attachments that were committed as PENDING after their blob's extraction finished
+     */
+    @Transactional
+    public void applyFinishedIndexResults(int limit) {
+        List<String> hashes = attachmentRepository.findStalePendingHashes(IndexingStatus.PENDING,
+                List.of(IndexingStatus.INDEXED, IndexingStatus.SKIPPED, IndexingStatus.FAILED), PageRequest.of(0, limit));
+        for (String contentHash : hashes) {
+            blobRepository.findById(contentHash).ifPresent(blob -> attachmentRepository.applyIndexResult(
+                    contentHash, blob.getIndexedContent(), blob.getIndexingStatus(), IndexingStatus.PENDING));
         }
     }
 
+    /**
+     * Requeue extractions cut off by a shutdown, and blobs stored before extraction had a status
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void requeueInterruptedIndexing() {
+        blobRepository.resetIndexing(IndexingStatus.INDEXING, IndexingStatus.PENDING);
+        blobRepository.queueUnindexed(IndexingStatus.PENDING);
+    }
+
+    private boolean isIndexingFinished(IndexingStatus status) {
+        return status == IndexingStatus.INDEXED || status == IndexingStatus.SKIPPED || status == IndexingStatus.FAILED;
+    }
+
 }
@@ -0,0 +1,8 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+/**
+ * Published when an attachment with not-yet-extracted content is saved
+ * AttachmentIndexer queues the extraction once the saving transaction commits
+ */
+public record AttachmentStoredEvent(String contentHash) {
+}
@@ -0,0 +1,76 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Locks on blob contents, so a blob file is never deleted while a
+ * transaction that is going to reference it is still open
+ *
+ * A writer locks the content hash before it decides whether to reuse the
+ * file on disk and keeps the lock until its transaction completes. The
+ * purge deletes a file only under the same lock and only if no committed
+ * blob row uses it. Locks are striped, so unrelated contents may share one;
+ * a writer waiting too long fails instead of deadlocking
+ */
+@Component
+public class BlobLocks {
+    private static final int STRIPES = 256;
+    private static final long WAIT_SECONDS = 30;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public BlobLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock a content hash until the current transaction commits or rolls back
+     * @throws IllegalStateException if no transaction is active
+     * @throws RuntimeException if the lock is not available in time
+     */
+    public void lockUntilCompletion(String contentHash) {
+        ReentrantLock lock = acquire(contentHash);
+        try {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Run an action while holding the lock of a content hash
+     */
+    public void runLocked(String contentHash, Runnable action) {
+        ReentrantLock lock = acquire(contentHash);
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock acquire(String contentHash) {
+        ReentrantLock lock = stripes[Math.floorMod(contentHash.hashCode(), STRIPES)];
+        try {
+            if (lock.tryLock(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                return lock;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new RuntimeException("Attachment storage is busy, try again");
+    }
+}
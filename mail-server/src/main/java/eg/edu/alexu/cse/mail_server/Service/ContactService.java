@@ -1,9 +1,9 @@
 package eg.edu.alexu.cse.mail_server.Service;
 
 import eg.edu.alexu.cse.mail_server.Entity.Contact;
-import eg.edu.alexu.cse.mail_server.Entity.User;
 import eg.edu.alexu.cse.mail_server.Repository.ContactRepository;
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserEntry;
 import eg.edu.alexu.cse.mail_server.dto.ContactDTO;
 
 import lombok.RequiredArgsConstructor;
@@ -16,10 +16,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ContactService {
     private final ContactRepository contactRepository;
-    private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
 
     public void addContact(ContactDTO dto, String email){
-        User user = userRepository.findByEmail(email)
+        UserEntry owner = userDirectory.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
 
         if (dto.getEmails() == null || dto.getEmails().isEmpty()) {
@@ -32,7 +32,7 @@ public class ContactService {
             }
 
             // Verify that the contact email exists in the database
-            if (!userRepository.findByEmail(contactEmail).isPresent()) {
+            if (userDirectory.findByEmail(contactEmail).isEmpty()) {
                 throw new IllegalArgumentException("Email not found in database: " + contactEmail);
             }
         }
@@ -40,7 +40,7 @@ public class ContactService {
         Contact contact = Contact.builder()
                             .name(dto.getName())
                             .emails(dto.getEmails())
-                            .user(user)
+                            .user(userDirectory.getReference(owner))
                             .build();
 
         contactRepository.save(contact);
@@ -65,7 +65,7 @@ public class ContactService {
             }
 
             // Verify that the contact email exists in the database
-            if (!userRepository.findByEmail(contactEmail).isPresent()) {
+            if (userDirectory.findByEmail(contactEmail).isEmpty()) {
                 throw new IllegalArgumentException("Email not found in database: " + contactEmail);
             }
         }
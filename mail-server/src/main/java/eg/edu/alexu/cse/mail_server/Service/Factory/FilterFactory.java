@@ -1,23 +1,23 @@
 package eg.edu.alexu.cse.mail_server.Service.Factory;
 
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
 import eg.edu.alexu.cse.mail_server.Service.Strategy.*;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class FilterFactory {
-    private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
 
     @Autowired
-    public FilterFactory(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public FilterFactory(UserDirectory userDirectory) {
+        this.userDirectory = userDirectory;
     }
 
     public FilterStrategy createFilter(String filter) {
         return switch (filter) {
-            case "sender"-> new SenderFilter(userRepository) ;
-            case "receiver" -> new ReceiverFilter(userRepository) ;
+            case "sender"-> new SenderFilter(userDirectory) ;
+            case "receiver" -> new ReceiverFilter(userDirectory) ;
             case "subject" -> new SubjectFilter() ;
             case "body" -> new BodyFilter() ;
             case "priority" -> new PriorityFilter() ;
@@ -1,33 +1,78 @@
 package eg.edu.alexu.cse.mail_server.Service;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import eg.edu.alexu.cse.mail_server.Entity.Attachment;
-import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 /**
  * Service for handling file storage operations on the file system.
  * Stores files in the user's home directory under "mansy-mail-uploads".
+ *
+ * Blobs of compressible types are stored GZIP-compressed as blobs/xx/<hash>.gz
+ * (the hash is always of the original content); formats that are already
+ * compressed, or whose first 64 KB do not shrink, are stored as-is.
+ * A GZIP stream cannot seek, so a byte range of a compressed blob is served
+ * by inflating it from the start: files larger than
+ * mail.storage.compress-max-bytes are never compressed, which bounds that
+ * cost and keeps large downloads seekable
  */
 @Service
 @RequiredArgsConstructor
 public class FileStorageService {
     
     private static final String UPLOAD_DIR_NAME = "mansy-mail-uploads";
+    private static final String BLOB_DIR_NAME = "blobs";
+    private static final String STAGING_DIR_NAME = "staging";
+    private static final String UPLOAD_PARTS_DIR_NAME = "uploads";
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    // Prefix compressed in memory to decide whether the whole file is worth compressing
+    private static final int COMPRESSION_SAMPLE_SIZE = 64 * 1024;
+
+    // Already compressed containers; compressing them again only costs CPU
+    private static final Set<String> PRECOMPRESSED_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/pdf", "application/epub+zip", "application/java-archive",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "application/vnd.oasis.opendocument.text", "application/vnd.oasis.opendocument.spreadsheet");
     private final Path uploadDirectory;
 
+    // Larger files are stored uncompressed so byte ranges stay cheap (see class comment)
+    @Value("${mail.storage.compress-max-bytes:16777216}")
+    private long compressMaxBytes = 16L * 1024 * 1024;
+
     public FileStorageService() {
         // Initialize upload directory path
         String userHome = System.getProperty("user.home");
@@ -52,48 +97,324 @@ public class FileStorageService {
     }
 
     /**
-     * Save a file to the file system
-     * 
-     * @param file The multipart file to save
-     * @param mail The mail entity this attachment belongs to
-     * @return Attachment entity with file metadata
+     * Stream file content to a staging file, named by its SHA-256 afterwards
+     * The digest and size are computed in the same pass, so heap use does
+     * not depend on file size. Compressible types are GZIP-compressed in the
+     * same pass if a sample of their first bytes shrinks; the input is read
+     * once either way. The staged file becomes a blob with {@link #placeBlob}
+     *
+     * @param file The multipart file to store
+     * @return the content's SHA-256 (hex), original size and staged file
      * @throws IOException if file writing fails
      */
-    public Attachment saveFile(MultipartFile file, Mail mail) throws IOException {
+    public StagedBlob stageBlob(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("Cannot save empty file");
         }
 
-        // Generate unique filename: UUID_originalFilename
-        String originalFilename = file.getOriginalFilename();
-        if (originalFilename == null || originalFilename.isEmpty()) {
-            originalFilename = "unnamed_file";
-        }
-        
-        String storedFileName = UUID.randomUUID().toString() + "_" + originalFilename;
-        
-        // Create subdirectory for this mail (optional, for organization)
-        Path mailDirectory = uploadDirectory.resolve(String.valueOf(mail.getMailId()));
-        if (!Files.exists(mailDirectory)) {
-            Files.createDirectories(mailDirectory);
-        }
-        
-        // Full path where file will be stored
-        Path filePath = mailDirectory.resolve(storedFileName);
-        
-        // Write file bytes to disk
-        Files.write(filePath, file.getBytes());
-        
-        // Build and return Attachment entity
-        return Attachment.builder()
-                .fileName(originalFilename)
-                .storedFileName(storedFileName)
-                .contentType(file.getContentType())
-                .fileSize(file.getSize())
-                .filePath(filePath.toString())
-                .uploadDate(LocalDateTime.now())
-                .mail(mail)
-                .build();
+        boolean compress = shouldCompress(file.getContentType(), file.getSize());
+        Path tempPath = createStagingFile();
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (BufferedInputStream in = new BufferedInputStream(
+                    new DigestInputStream(file.getInputStream(), digest), COMPRESSION_SAMPLE_SIZE)) {
+                compress = compress && isWorthCompressing(in);
+                try (OutputStream out = openBlobOutput(tempPath, compress)) {
+                    size = in.transferTo(out);
+                }
+            }
+            return new StagedBlob(HexFormat.of().formatHex(digest.digest()), size, tempPath, compress);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Content written by {@link #stageBlob(MultipartFile)} that is not a blob yet
+     */
+    public record StagedBlob(String contentHash, long size, Path stagedFile, boolean compressed) {
+    }
+
+    /**
+     * Turn staged content into its blob file
+     * Content that is already on disk is not kept twice, so the same file
+     * attached to many mails occupies the disk once. Call while holding the
+     * content's {@link BlobLocks} lock, so the reused file cannot be purged
+     *
+     * @return the blob's SHA-256, size and location
+     * @throws IOException if the staged file cannot be moved
+     */
+    public StoredBlob placeBlob(StagedBlob staged) throws IOException {
+        Path existing = findBlobFile(staged.contentHash());
+        if (existing != null) {
+            Files.deleteIfExists(staged.stagedFile());
+            return new StoredBlob(staged.contentHash(), staged.size(), existing.toString());
+        }
+        Path blobPath = moveIntoBlobs(staged.stagedFile(), staged.contentHash(), staged.compressed());
+        return new StoredBlob(staged.contentHash(), staged.size(), blobPath.toString());
+    }
+
+    /**
+     * Remove a staged file that was not placed (no-op once it was)
+     */
+    public void discardStaged(StagedBlob staged) throws IOException {
+        Files.deleteIfExists(staged.stagedFile());
+    }
+
+    /**
+     * Result of {@link #placeBlob(StagedBlob)} and {@link #completeUpload(String, String, String)}
+     *
+     * @param contentHash SHA-256 (hex) of the original content
+     * @param size size of the original content in bytes
+     * @param filePath where the blob is stored (compressed if it ends with .gz)
+     */
+    public record StoredBlob(String contentHash, long size, String filePath) {
+    }
+
+    /**
+     * Write one chunk of a resumable upload into its part file at the given offset
+     * Anything past the offset (left by a chunk that was never recorded) is
+     * dropped first. If the client disconnects mid-chunk, the bytes that did
+     * arrive are kept and counted, so the resumed upload does not resend them
+     *
+     * @param uploadId the upload session
+     * @param offset position of the first byte of this chunk
+     * @param in the chunk content
+     * @param maxBytes how many bytes the chunk may contain at most
+     * @return number of bytes written
+     * @throws IllegalArgumentException if the chunk is longer than maxBytes
+     * @throws IOException if writing to disk fails
+     */
+    public long writeChunk(String uploadId, long offset, InputStream in, long maxBytes) throws IOException {
+        Path partPath = getUploadPartPath(uploadId);
+        Files.createDirectories(partPath.getParent());
+
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.position(offset);
+
+            ReadableByteChannel source = Channels.newChannel(in);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BUFFER_SIZE);
+            long written = 0;
+            while (true) {
+                int read;
+                try {
+                    read = source.read(buffer);
+                } catch (IOException e) {
+                    System.err.println("Upload " + uploadId + " interrupted after " + written + " bytes of chunk: " + e.getMessage());
+                    break;
+                }
+                if (read == -1) {
+                    break;
+                }
+                if (written + buffer.position() > maxBytes) {
+                    throw new IllegalArgumentException("Chunk goes past the declared upload size");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            // Only count bytes that are durable
+            channel.force(false);
+            return written;
+        }
+    }
+
+    /**
+     * Turn a fully received upload into a blob
+     * The part file is hashed in one streaming pass; on a checksum mismatch it
+     * is deleted, otherwise it is moved (atomically) to its blob path,
+     * compressed first if its type and size allow and a sample of it shrinks
+     *
+     * @param uploadId the upload session
+     * @param expectedHash SHA-256 (hex) the client expects, or null to skip the check
+     * @param contentType declared type of the file, decides compression
+     * @return the blob's SHA-256, size and location
+     * @throws IllegalArgumentException if the content does not match expectedHash
+     * @throws IOException if the part file cannot be read or moved
+     */
+    public StoredBlob completeUpload(String uploadId, String expectedHash, String contentType) throws IOException {
+        Path partPath = getUploadPartPath(uploadId);
+        String contentHash = hashFile(partPath.toString());
+        if (expectedHash != null && !expectedHash.equalsIgnoreCase(contentHash)) {
+            Files.deleteIfExists(partPath);
+            throw new IllegalArgumentException("Checksum mismatch for upload " + uploadId
+                    + ": expected " + expectedHash + " but received " + contentHash + ", upload again from offset 0");
+        }
+
+        long size = Files.size(partPath);
+        Path existing = findBlobFile(contentHash);
+        if (existing != null) {
+            Files.delete(partPath);
+            return new StoredBlob(contentHash, size, existing.toString());
+        }
+
+        if (shouldCompress(contentType, size) && isWorthCompressing(partPath)) {
+            Path tempPath = createStagingFile();
+            try {
+                try (InputStream in = Files.newInputStream(partPath);
+                     OutputStream out = openBlobOutput(tempPath, true)) {
+                    in.transferTo(out);
+                }
+                Path blobPath = moveIntoBlobs(tempPath, contentHash, true);
+                Files.delete(partPath);
+                return new StoredBlob(contentHash, size, blobPath.toString());
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+        return new StoredBlob(contentHash, size, moveIntoBlobs(partPath, contentHash, false).toString());
+    }
+
+    /**
+     * Remove the part file of an abandoned upload
+     */
+    public void deleteUploadPart(String uploadId) throws IOException {
+        Files.deleteIfExists(getUploadPartPath(uploadId));
+    }
+
+    // Under blobs/ so completing an upload is a same-file-system move
+    private Path getUploadPartPath(String uploadId) {
+        return uploadDirectory.resolve(BLOB_DIR_NAME).resolve(UPLOAD_PARTS_DIR_NAME).resolve(uploadId + ".part");
+    }
+
+    /**
+     * Location of an uncompressed blob: blobs/<first two hex digits>/<hash>
+     */
+    public Path getBlobPath(String contentHash) {
+        return uploadDirectory.resolve(BLOB_DIR_NAME).resolve(contentHash.substring(0, 2)).resolve(contentHash);
+    }
+
+    /**
+     * The stored file of a blob, compressed or not
+     *
+     * @return its path, or null if no file with this content is stored
+     */
+    public Path findBlobFile(String contentHash) {
+        Path plainPath = getBlobPath(contentHash);
+        if (Files.exists(plainPath)) {
+            return plainPath;
+        }
+        Path compressedPath = compressedPath(plainPath);
+        return Files.exists(compressedPath) ? compressedPath : null;
+    }
+
+    /**
+     * Delete the stored file of a blob in whichever form it was stored
+     */
+    public void deleteBlobFile(String contentHash) throws IOException {
+        Path plainPath = getBlobPath(contentHash);
+        Files.deleteIfExists(plainPath);
+        Files.deleteIfExists(compressedPath(plainPath));
+    }
+
+    /**
+     * Whether a stored file holds compressed content
+     */
+    public boolean isCompressedFile(String filePath) {
+        return filePath.endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Open a stored file for reading its original content
+     * Compressed blobs are decompressed while they are read
+     */
+    public InputStream openStoredFile(String filePath) throws IOException {
+        InputStream in = Files.newInputStream(Paths.get(filePath));
+        return isCompressedFile(filePath) ? new GZIPInputStream(in, CHUNK_BUFFER_SIZE) : in;
+    }
+
+    private boolean shouldCompress(String contentType, long size) {
+        return size <= compressMaxBytes && isCompressible(contentType);
+    }
+
+    // Images, audio and video are compressed by their own codecs (SVG is plain XML);
+    // unknown binary content rarely shrinks enough to pay for compressing it
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        if (type.startsWith("image/")) {
+            return type.equals("image/svg+xml") || type.equals("image/bmp");
+        }
+        return !type.startsWith("video/") && !type.startsWith("audio/") && !type.equals("application/octet-stream")
+                && !PRECOMPRESSED_TYPES.contains(type);
+    }
+
+    private boolean isWorthCompressing(Path file) throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), COMPRESSION_SAMPLE_SIZE)) {
+            return isWorthCompressing(in);
+        }
+    }
+
+    // Compress only if the sample saves at least a tenth of its size; the stream is rewound afterwards
+    private boolean isWorthCompressing(BufferedInputStream in) throws IOException {
+        in.mark(COMPRESSION_SAMPLE_SIZE);
+        byte[] sample = in.readNBytes(COMPRESSION_SAMPLE_SIZE);
+        in.reset();
+        if (sample.length == 0) {
+            return false;
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+            long compressedSize = 0;
+            while (!deflater.finished()) {
+                compressedSize += deflater.deflate(buffer);
+            }
+            return compressedSize <= sample.length * 9L / 10;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private OutputStream openBlobOutput(Path path, boolean compress) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        return compress ? new GZIPOutputStream(out, CHUNK_BUFFER_SIZE) : out;
+    }
+
+    // Staged under blobs/ so the final move stays on one file system and is atomic
+    private Path createStagingFile() throws IOException {
+        Path stagingDirectory = uploadDirectory.resolve(BLOB_DIR_NAME).resolve(STAGING_DIR_NAME);
+        Files.createDirectories(stagingDirectory);
+        return Files.createTempFile(stagingDirectory, "upload", ".tmp");
+    }
+
+    private Path moveIntoBlobs(Path source, String contentHash, boolean compressed) throws IOException {
+        Path blobPath = compressed ? compressedPath(getBlobPath(contentHash)) : getBlobPath(contentHash);
+        Files.createDirectories(blobPath.getParent());
+        Files.move(source, blobPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return blobPath;
+    }
+
+    private Path compressedPath(Path plainPath) {
+        return plainPath.resolveSibling(plainPath.getFileName() + COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Compute the SHA-256 of a file already on disk without loading it whole
+     *
+     * @param filePath Full path to the file
+     * @return SHA-256 of the content (hex)
+     * @throws IOException if file reading fails
+     */
+    public String hashFile(String filePath) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(Paths.get(filePath)), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
     /**
@@ -121,6 +442,81 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * Load a stored file by its full path as a Resource of its original content
+     * A FileSystemResource is backed by a FileChannel, so byte ranges are
+     * served by seeking to the requested offset instead of reading the file
+     * from the start. Compressed blobs are inflated while streaming; a range
+     * there is served by decompressing up to its start, which is why only
+     * files up to mail.storage.compress-max-bytes are compressed
+     *
+     * @param filePath Full path to the file
+     * @param contentLength size of the original content
+     * @return Resource representing the file
+     * @throws IOException if file not found or cannot be read
+     */
+    public Resource loadStoredFile(String filePath, Long contentLength) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.isReadable(path)) {
+            throw new IOException("File not found or not readable: " + filePath);
+        }
+        return isCompressedFile(filePath)
+                ? new CompressedFileResource(path, contentLength)
+                : new FileSystemResource(path);
+    }
+
+    /**
+     * Load a compressed blob as stored, for clients that accept gzip transfer encoding
+     */
+    public FileSystemResource loadCompressedFile(String filePath) throws IOException {
+        FileSystemResource resource = new FileSystemResource(Paths.get(filePath));
+        if (!resource.exists() || !resource.isReadable()) {
+            throw new IOException("File not found or not readable: " + filePath);
+        }
+        return resource;
+    }
+
+    /**
+     * Original content of a GZIP-compressed blob, decompressed on read
+     * Not an InputStreamResource, so Spring can still cut byte ranges out of it.
+     * Every range (and every region of a multi-range request) inflates from
+     * byte 0; blobs are small enough for that (mail.storage.compress-max-bytes)
+     */
+    private class CompressedFileResource extends AbstractResource {
+        private final Path path;
+        private final long contentLength;
+
+        CompressedFileResource(Path path, long contentLength) {
+            this.path = path;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return openStoredFile(path.toString());
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.exists(path);
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+
+        @Override
+        public String getDescription() {
+            return "compressed file [" + path + "]";
+        }
+    }
+
     /**
      * Read file bytes directly from disk
      * 
@@ -133,7 +529,9 @@ public class FileStorageService {
         if (!Files.exists(path)) {
             throw new IOException("File not found: " + filePath);
         }
-        return Files.readAllBytes(path);
+        try (InputStream in = openStoredFile(filePath)) {
+            return in.readAllBytes();
+        }
     }
 
     /**
@@ -149,6 +547,14 @@ public class FileStorageService {
         }
     }
 
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     /**
      * Get the upload directory path
      * 
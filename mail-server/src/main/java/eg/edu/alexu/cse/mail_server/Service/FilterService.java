@@ -8,15 +8,31 @@ import eg.edu.alexu.cse.mail_server.Service.Decorator.AndDecorator;
 import eg.edu.alexu.cse.mail_server.Service.Decorator.OrDecorator;
 import eg.edu.alexu.cse.mail_server.Service.Factory.FilterBuilder;
 import eg.edu.alexu.cse.mail_server.Service.Strategy.*;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserEntry;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
 import eg.edu.alexu.cse.mail_server.dto.AttachmentDTO;
 import eg.edu.alexu.cse.mail_server.dto.EmailViewDto;
 import eg.edu.alexu.cse.mail_server.dto.MailFilterDTO;
+import eg.edu.alexu.cse.mail_server.dto.MailPageDto;
+import eg.edu.alexu.cse.mail_server.dto.SearchCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * This class represent filter service
@@ -30,15 +46,45 @@ import java.util.List;
 @Service
 public class FilterService {
     private final MailRepository mailRepository;
-    private final MailFilter mailFilter;
     private final FilterBuilder filterBuilder ;
+    private final MailJsonStreamer mailJsonStreamer;
+    private final MailSearchIndex mailSearchIndex;
+    private final UserDirectory userDirectory;
+
+    // Larger index hits are not sent as an IN list; the text filter then checks the mails instead
+    private static final int MAX_INDEXED_CANDIDATES = 5000;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Filters run on their own pool so large searches do not occupy the common pool or request threads
+    private ForkJoinPool filterPool;
+
+    @Value("${mail.search.parallelism:0}")
+    private int parallelism;
+
+    // Candidate lists up to this size are evaluated on the request thread
+    @Value("${mail.search.parallel-threshold:500}")
+    private int parallelThreshold;
 
     @Autowired
-    public FilterService(MailRepository mailRepository, FilterBuilder filterBuilder) {
+    public FilterService(MailRepository mailRepository, FilterBuilder filterBuilder, MailJsonStreamer mailJsonStreamer,
+                         MailSearchIndex mailSearchIndex, UserDirectory userDirectory) {
         this.mailRepository = mailRepository;
         this.filterBuilder = filterBuilder;
-        this.mailFilter = new MailFilter() ;
+        this.mailJsonStreamer = mailJsonStreamer;
+        this.mailSearchIndex = mailSearchIndex;
+        this.userDirectory = userDirectory;
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        filterPool = new ForkJoinPool(threads);
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        filterPool.shutdownNow();
     }
 
     /**
@@ -51,14 +97,14 @@ public class FilterService {
             throw new IllegalArgumentException("User ID is required for filtering");
         }
 
-        // Get only emails owned by this user (owner-based query)
-        List<Mail> mails = mailRepository.findByOwnerIdOrderByTimestampDesc(dto.getUserId());
         List<FilterStrategy> activeFilters = buildFilters(dto) ;
 
         if (activeFilters.isEmpty()) throw new IllegalArgumentException("Invalid filters");
 
-        FilterStrategy filter = combineFilters(activeFilters,true) ;
-        mailFilter.setFilterStrategy(filter);
+        // Only emails owned by this user, narrowed in SQL where the filters allow
+        List<Mail> mails = loadCandidates(dto.getUserId(), activeFilters, true);
+        // One MailFilter per request: the service is shared between concurrent searches
+        MailFilter mailFilter = new MailFilter(inMemoryFilter(activeFilters, true), filterPool, parallelThreshold) ;
         return convertToDTO(mailFilter.getEmails(mails)) ;
     }
 
@@ -74,17 +120,134 @@ public class FilterService {
             throw new IllegalArgumentException("User ID is required for filtering");
         }
 
-        // Get only emails owned by this user (owner-based query)
-        List<Mail> mails = mailRepository.findByOwnerIdOrderByTimestampDesc(dto.getUserId());
         List<FilterStrategy> activeFilters = buildFilters(dto) ;
 
         if (activeFilters.isEmpty()) throw new IllegalArgumentException("Invalid filters");
 
-        FilterStrategy filter = combineFilters(activeFilters,false) ;
-        mailFilter.setFilterStrategy(filter);
+        // Only emails owned by this user, narrowed in SQL where the filters allow
+        List<Mail> mails = loadCandidates(dto.getUserId(), activeFilters, false);
+        // One MailFilter per request: the service is shared between concurrent searches
+        MailFilter mailFilter = new MailFilter(inMemoryFilter(activeFilters, false), filterPool, parallelThreshold) ;
         return convertToDTO(mailFilter.getEmails(mails)) ;
     }
 
+    /**
+     * Paginated variant of getEmailsAnd / getEmailsOr
+     * Results are ranked by score, then newest first; only the best limit
+     * matches after the cursor are kept while the candidates are scanned,
+     * so a page does not require ranking the whole match set
+     * @param dto the filter criteria (userId required)
+     * @param useAnd AND or OR combination of the criteria
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit page size (defaults to 50, capped at 200)
+     * @return the page of emails and the cursor of the next page (null on the last page)
+     */
+    public MailPageDto<EmailViewDto> getEmailsPage(MailFilterDTO dto, boolean useAnd, String cursor, Integer limit) {
+        if (dto.getUserId() == null) {
+            throw new IllegalArgumentException("User ID is required for filtering");
+        }
+        SearchCursor after = cursor == null ? null : SearchCursor.decode(cursor);
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        List<FilterStrategy> activeFilters = buildFilters(dto) ;
+        if (activeFilters.isEmpty()) throw new IllegalArgumentException("Invalid filters");
+
+        List<Mail> mails = loadCandidates(dto.getUserId(), activeFilters, useAnd);
+        MailFilter mailFilter = new MailFilter(inMemoryFilter(activeFilters, useAnd), filterPool, parallelThreshold) ;
+        MailFilter.RankedPage page = mailFilter.getTopEmails(mails, after, pageSize);
+
+        List<EmailViewDto> items = new ArrayList<>();
+        for (MailFilter.ScoredMail match : page.matches()) {
+            items.add(toDTO(match.mail()));
+        }
+        String nextCursor = null;
+        if (page.hasMore()) {
+            nextCursor = page.matches().get(page.matches().size() - 1).toCursor().encode();
+        }
+        return MailPageDto.<EmailViewDto>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Validate the criteria and build the combined filter for a streamed search
+     * Done before the response starts, so invalid input still gets a 400
+     */
+    public FilterStrategy prepareFilter(MailFilterDTO dto, boolean useAnd) {
+        if (dto.getUserId() == null) {
+            throw new IllegalArgumentException("User ID is required for filtering");
+        }
+        List<FilterStrategy> activeFilters = buildFilters(dto) ;
+        if (activeFilters.isEmpty()) throw new IllegalArgumentException("Invalid filters");
+        return combineFilters(activeFilters, useAnd) ;
+    }
+
+    /**
+     * Streamed variant of getEmailsAnd / getEmailsOr
+     * The mailbox is read through a database cursor and each match is written as soon
+     * as it is evaluated, newest first, so memory does not grow with the mailbox or the
+     * number of matches. Use the paged search for score-ranked results
+     */
+    @Transactional
+    public void streamEmails(Long userId, FilterStrategy filter, OutputStream out) {
+        try (Stream<Mail> mails = mailRepository.streamByOwnerIdOrderByTimestampDesc(userId)) {
+            mailJsonStreamer.writeArray(out, mails
+                    .map(mailJsonStreamer.detaching(mail -> filter.filter(mail) ? toDTO(mail) : null))
+                    .filter(Objects::nonNull));
+        }
+    }
+
+    /**
+     * The mails a search has to evaluate, newest first
+     * Structured filters (priority, read flag, folder, dates, attachments) are
+     * pushed into the WHERE clause as Specifications, and body/subject filters
+     * become "mailId IN (...)" from the search index. For AND every pushed
+     * condition narrows the query; for OR the query is only narrowed when every
+     * filter could be pushed down, otherwise the whole mailbox is read
+     */
+    private List<Mail> loadCandidates(Long userId, List<FilterStrategy> activeFilters, boolean useAnd) {
+        Specification<Mail> ownedByUser = (root, query, cb) -> cb.equal(root.get("ownerId"), userId);
+        List<Specification<Mail>> predicates = new ArrayList<>();
+        boolean everyFilterPushed = true;
+        for (FilterStrategy filter : activeFilters) {
+            Specification<Mail> predicate = filter.toSpecification();
+            if (predicate == null) {
+                Set<Long> indexed = mailSearchIndex.findCandidates(userId, filter);
+                if (indexed != null && indexed.size() <= MAX_INDEXED_CANDIDATES) {
+                    predicate = (root, query, cb) -> indexed.isEmpty()
+                            ? cb.disjunction()
+                            : root.get("mailId").in(indexed);
+                }
+            }
+            if (predicate == null) {
+                everyFilterPushed = false;
+            } else {
+                predicates.add(predicate);
+            }
+        }
+
+        Specification<Mail> where = ownedByUser;
+        if (useAnd && !predicates.isEmpty()) {
+            where = where.and(Specification.allOf(predicates));
+        } else if (!useAnd && everyFilterPushed) {
+            where = where.and(Specification.anyOf(predicates));
+        }
+        return mailRepository.findAll(where, Sort.by(Sort.Direction.DESC, "timestamp"));
+    }
+
+    // Filters evaluated in memory after loadCandidates: for AND, conditions that ran in SQL are only scored
+    private FilterStrategy inMemoryFilter(List<FilterStrategy> activeFilters, boolean useAnd) {
+        if (!useAnd) {
+            return combineFilters(activeFilters, false);
+        }
+        List<FilterStrategy> remaining = new ArrayList<>();
+        for (FilterStrategy filter : activeFilters) {
+            remaining.add(filter.toSpecification() != null ? new PushedDownFilter(filter) : filter);
+        }
+        return combineFilters(remaining, true);
+    }
+
     private EmailViewDto toDTO(Mail mail) {
         // Load attachment metadata (filename, size, type) for search results
         List<AttachmentDTO> attachmentDTOs = null;
@@ -108,7 +271,10 @@ public class FilterService {
 
         EmailViewDto dto = new EmailViewDto();
         dto.setId(mail.getMailId());
-        dto.setSender(mail.getSenderRel().getFirstName() + " " + mail.getSenderRel().getLastName());
+        // Sender name from the directory instead of loading senderRel for every result
+        dto.setSender(userDirectory.findByEmail(mail.getSender())
+                .map(UserEntry::displayName)
+                .orElseGet(() -> mail.getSenderRel().getFirstName() + " " + mail.getSenderRel().getLastName()));
         dto.setReceiver(mail.getReceiver());
         dto.setSubject(mail.getSubject());
         dto.setBody(mail.getBody());
@@ -0,0 +1,42 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Moves the id_generators rows past the IDs already in the database
+ * Mail, Attachment and User used to get AUTO_INCREMENT IDs; their pooled
+ * generators must not hand out a value that an existing row still holds.
+ * Runs once the schema is up to date and before any request is served
+ */
+@Component
+@RequiredArgsConstructor
+public class IdGeneratorSeeder {
+    // Matches allocationSize of the @TableGenerator mappings
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    // Injected only so the schema update has run before this bean initializes
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void seed() {
+        seed("mail", "mail", "mail_id");
+        seed("attachment", "attachment", "id");
+        seed("users", "_users", "user_id");
+    }
+
+    // The pooled optimizer hands out (stored value - allocation + 1) first, so keep a full block of headroom
+    private void seed(String segment, String table, String idColumn) {
+        String floor = "(SELECT COALESCE(MAX(" + idColumn + "), 0) + " + (ALLOCATION_SIZE + 1) + " FROM " + table + ")";
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = GREATEST(next_val, " + floor + ") WHERE gen_name = ?", segment);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO id_generators (gen_name, next_val) SELECT ?, " + floor, segment);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stores the inbox copies of one send in JDBC batches
+ * Mail IDs come from a pooled generator, so persisting a copy does not hit
+ * the database; each flush then sends a whole batch of INSERTs in one round
+ * trip. Mod-sequences and folder counters are updated, and the copies
+ * added to the search index, for all copies at once
+ */
+@Service
+@RequiredArgsConstructor
+public class MailFanOutWriter {
+    private final MailRepository mailRepository;
+    private final MailSyncService mailSyncService;
+    private final MailboxCounterService mailboxCounterService;
+    private final MailSearchIndex mailSearchIndex;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Keep in step with hibernate.jdbc.batch_size
+    @Value("${mail.fanout.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * Insert new mails (IDs and mod-sequences are assigned on the given instances)
+     */
+    @Transactional
+    public void writeAll(List<Mail> mails) {
+        mailSyncService.touchAll(mails);
+        for (int from = 0; from < mails.size(); from += batchSize) {
+            mailRepository.saveAll(mails.subList(from, Math.min(from + batchSize, mails.size())));
+            entityManager.flush();
+        }
+        mailboxCounterService.mailsAdded(mails);
+        mailSearchIndex.indexAll(mails);
+    }
+}
@@ -0,0 +1,74 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MessageBody;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Writes large mail results as a JSON array one element at a time
+ * Used with repository Stream queries: each entity is converted, written
+ * and detached before the next row is read, so heap use stays flat no
+ * matter how many mails the response contains
+ */
+@Component
+@RequiredArgsConstructor
+public class MailJsonStreamer {
+    // Matches the fetch size of the stream queries
+    private static final int CLEAR_INTERVAL = 500;
+
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Convert and write every mail of the stream, detaching each entity once written
+     * Must run inside the transaction that opened the stream
+     */
+    public <T> void writeMails(OutputStream out, Stream<Mail> mails, Function<Mail, T> toDto) {
+        writeArray(out, mails.map(detaching(toDto)));
+    }
+
+    /**
+     * Write every item of the stream as one JSON array
+     */
+    public void writeArray(OutputStream out, Stream<?> items) {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.writeStartArray();
+            items.forEachOrdered(generator::writePOJO);
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Wrap a mapping so the source entity leaves the persistence context right after it is mapped
+     * The shared body is not cascaded by detach, so it is detached explicitly; anything else the
+     * mapping loaded (sender, receivers) is dropped by clearing the context every CLEAR_INTERVAL mails
+     */
+    public <T> Function<Mail, T> detaching(Function<Mail, T> mapping) {
+        AtomicInteger mapped = new AtomicInteger();
+        return mail -> {
+            T result = mapping.apply(mail);
+            MessageBody body = mail.getMessageBody();
+            entityManager.detach(mail);
+            if (body != null && entityManager.contains(body)) {
+                entityManager.detach(body);
+            }
+            if (mapped.incrementAndGet() % CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+            return result;
+        };
+    }
+}
@@ -1,35 +1,69 @@
 package eg.edu.alexu.cse.mail_server.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import eg.edu.alexu.cse.mail_server.Entity.Attachment;
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MessageBody;
 import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MessageBodyRepository;
 import eg.edu.alexu.cse.mail_server.Service.command.DraftCommand;
 import eg.edu.alexu.cse.mail_server.Service.command.GetMailCommand;
 import eg.edu.alexu.cse.mail_server.Service.command.SendCommand;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.outbox.OutboxService;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
+import eg.edu.alexu.cse.mail_server.Service.sort.MailSortEngine;
+import eg.edu.alexu.cse.mail_server.Service.sort.MailSortKey;
 import eg.edu.alexu.cse.mail_server.dto.AttachmentDTO;
 import eg.edu.alexu.cse.mail_server.dto.ComposeEmailDTO;
+import eg.edu.alexu.cse.mail_server.dto.DraftPatchDto;
+import eg.edu.alexu.cse.mail_server.dto.DraftSavedDto;
 import eg.edu.alexu.cse.mail_server.dto.EmailViewDto;
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
+import eg.edu.alexu.cse.mail_server.dto.MailChangesDto;
+import eg.edu.alexu.cse.mail_server.dto.MailCursor;
+import eg.edu.alexu.cse.mail_server.dto.MailPageDto;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
 public class MailService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final List<String> PRIMARY_FOLDERS = List.of("INBOX", "SENT", "trash");
+
     private final SendCommand sendCommand;
     private final DraftCommand draftCommand;
     private final GetMailCommand getMailCommand;
     private final MailRepository mailRepository;
+    private final MessageBodyRepository messageBodyRepository;
+    private final MailSearchIndex mailSearchIndex;
     private final AttachmentService attachmentService;
-    private final eg.edu.alexu.cse.mail_server.Repository.UserRepository userRepository;
+    private final UserDirectory userDirectory;
+    private final MailSortEngine mailSortEngine;
+    private final MailboxCounterService mailboxCounterService;
+    private final MailSyncService mailSyncService;
+    private final MailJsonStreamer mailJsonStreamer;
+    private final OutboxService outboxService;
 
     public void send(ComposeEmailDTO composeEmailDTO) {
         sendCommand.execute(composeEmailDTO);
@@ -39,48 +73,53 @@ public class MailService {
      * Send email with attachments
      * @param composeEmailDTO email details
      * @param attachments list of files to attach
+     * @return outbox ID for checking delivery status
      * @throws IOException if file processing fails
      */
-    public void sendWithAttachments(ComposeEmailDTO composeEmailDTO, List<MultipartFile> attachments) throws IOException {
-        sendCommand.executeWithAttachments(composeEmailDTO, attachments);
+    public Long sendWithAttachments(ComposeEmailDTO composeEmailDTO, List<MultipartFile> attachments) throws IOException {
+        return sendCommand.executeWithAttachments(composeEmailDTO, attachments);
     }
 
-    public void draft(ComposeEmailDTO composeEmailDTO) {
-        draftCommand.execute(composeEmailDTO);
+    /**
+     * Save a draft: a new one, or in place when the DTO carries a draftId
+     * @return the draft's ID and new version
+     */
+    public DraftSavedDto draft(ComposeEmailDTO composeEmailDTO) {
+        return draftCommand.save(composeEmailDTO);
+    }
+
+    /**
+     * Apply only the changed fields of an autosave to an existing draft
+     * @return the draft's ID and new version
+     */
+    public DraftSavedDto patchDraft(Long draftId, DraftPatchDto changes) {
+        return draftCommand.patch(draftId, changes);
     }
 
     // Get inbox mails
     public List<EmailViewDto> getInboxMails(String userEmail) {
-        Long userId = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getUserId();
+        Long userId = userDirectory.getUserId(userEmail);
         List<Mail> mails = mailRepository.findByOwnerIdAndFolderNameOrderByTimestampDesc(userId, "INBOX");
         return mails.stream().map(this::convertToEmailViewDto).collect(Collectors.toList());
     }
 
     // Get sent mails
     public List<EmailViewDto> getSentMails(String userEmail) {
-        Long userId = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getUserId();
+        Long userId = userDirectory.getUserId(userEmail);
         List<Mail> mails = mailRepository.findByOwnerIdAndFolderNameOrderByTimestampDesc(userId, "SENT");
         return mails.stream().map(this::convertToEmailViewDto).collect(Collectors.toList());
     }
 
     // Get draft mails
     public List<EmailViewDto> getDraftMails(String userEmail) {
-        Long userId = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getUserId();
+        Long userId = userDirectory.getUserId(userEmail);
         List<Mail> mails = mailRepository.findByOwnerIdAndFolderNameOrderByTimestampDesc(userId, "DRAFTS");
         return mails.stream().map(this::convertToEmailViewDto).collect(Collectors.toList());
     }
 
     // Get trash mails
     public List<EmailViewDto> getTrashMails(String userEmail) {
-        Long userId = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getUserId();
+        Long userId = userDirectory.getUserId(userEmail);
         List<Mail> mails = mailRepository.findByOwnerIdAndFolderNameOrderByTimestampDesc(userId, "trash");
         return mails.stream().map(this::convertToEmailViewDto).collect(Collectors.toList());
     }
@@ -88,9 +127,7 @@ public class MailService {
 
     // Get mails by folder
     public List<EmailViewDto> getMailsByFolder(String userEmail, String folderName) {
-        Long userId = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getUserId();
+        Long userId = userDirectory.getUserId(userEmail);
 
         List<Mail> mails;
         if ("all".equalsIgnoreCase(folderName)) {
@@ -104,6 +141,69 @@ public class MailService {
         return mails.stream().map(this::convertToEmailViewDto).collect(Collectors.toList());
     }
 
+    /**
+     * Resolve a user's ID from their email address
+     */
+    public Long getUserId(String userEmail) {
+        return userDirectory.getUserId(userEmail);
+    }
+
+    /**
+     * Write every mail of a folder (or "all") as a JSON array without building the list in memory
+     * Mails are read through a database cursor and detached as soon as they are written
+     *
+     * @param userId owner of the folder
+     * @param folderName folder name, or "all" for INBOX, SENT and trash
+     * @param out response body to write to
+     */
+    @Transactional
+    public void streamMailsByFolder(Long userId, String folderName, OutputStream out) {
+        List<String> folders = "all".equalsIgnoreCase(folderName) ? PRIMARY_FOLDERS : List.of(folderName);
+        try (Stream<Mail> mails = mailRepository.streamByOwnerIdAndFolderNameInOrderByTimestampDesc(userId, folders)) {
+            mailJsonStreamer.writeMails(out, mails, this::convertToEmailViewDto);
+        }
+    }
+
+    /**
+     * Get one page of a folder using keyset pagination on (timestamp, mailId)
+     * Each call reads at most limit + 1 rows no matter how large the folder is
+     * Rows are metadata-only summaries; open a mail to get its body and attachments
+     *
+     * @param userEmail owner of the folder
+     * @param folderName INBOX, SENT, DRAFTS, trash, a custom folder or "all"
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit page size (defaults to 50, capped at 200)
+     * @return the page of mails and the cursor of the next page (null on the last page)
+     */
+    public MailPageDto<MailSummaryDto> getMailsPage(String userEmail, String folderName, String cursor, Integer limit) {
+        Long userId = userDirectory.getUserId(userEmail);
+
+        int pageSize = resolvePageSize(limit);
+        List<String> folders = "all".equalsIgnoreCase(folderName) ? PRIMARY_FOLDERS : List.of(folderName);
+
+        // Fetch one extra row to know whether a next page exists without a COUNT query
+        PageRequest window = PageRequest.of(0, pageSize + 1);
+        List<MailSummaryDto> mails;
+        if (cursor == null || cursor.isBlank()) {
+            mails = mailRepository.findFolderPage(userId, folders, window);
+        } else {
+            MailCursor after = MailCursor.decode(cursor);
+            mails = mailRepository.findFolderPageAfter(userId, folders, after.timestamp(), after.mailId(), window);
+        }
+
+        String nextCursor = null;
+        if (mails.size() > pageSize) {
+            mails = mails.subList(0, pageSize);
+            MailSummaryDto last = mails.get(pageSize - 1);
+            nextCursor = new MailCursor(last.getTimestamp(), last.getId()).encode();
+        }
+
+        return MailPageDto.<MailSummaryDto>builder()
+                .items(mails)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
     // Get mail by ID
     public Mail getMailById(Long mailId) {
         return mailRepository.findById(mailId)
@@ -111,58 +211,110 @@ public class MailService {
     }
 
     // Mark as read
+    @Transactional
     public void markAsRead(Long mailId) {
         Mail mail = getMailById(mailId);
+        if (mail.isRead()) {
+            return;
+        }
         mail.setRead(true);
+        mailSyncService.touch(mail);
         mailRepository.save(mail);
+        mailboxCounterService.readFlagChanged(mail);
     }
 
+    @Transactional
     public void markAsUnread(Long mailId) {
         Mail mail = getMailById(mailId);
+        if (!mail.isRead()) {
+            return;
+        }
         mail.setRead(false);
+        mailSyncService.touch(mail);
         mailRepository.save(mail);
+        mailboxCounterService.readFlagChanged(mail);
     }
 
     // Delete mail (soft delete - move to trash)
     // Note: This requires userId parameter for ownership verification
+    @Transactional
     public void deleteMail(Long mailId, Long userId) {
         Mail mail = mailRepository.findByMailIdAndOwnerId(mailId, userId);
         if (mail == null) {
             throw new IllegalArgumentException("Mail not found or you don't have permission to delete it");
         }
-        mail.setFolderName("trash");
-        mail.setDeletedAt(java.time.LocalDateTime.now()); // Track when moved to trash
-        mailRepository.save(mail);
+        moveToTrash(mail);
     }
 
     // Overload for backward compatibility (when userId is not available)
+    @Transactional
     public void deleteMail(Long mailId) {
-        Mail mail = getMailById(mailId);
+        moveToTrash(getMailById(mailId));
+    }
+
+    private void moveToTrash(Mail mail) {
+        String fromFolder = mail.getFolderName();
         mail.setFolderName("trash");
-        mail.setDeletedAt(java.time.LocalDateTime.now());
+        mail.setDeletedAt(java.time.LocalDateTime.now()); // Track when moved to trash
+        mailSyncService.touch(mail);
         mailRepository.save(mail);
+        if (!"trash".equals(fromFolder)) {
+            mailboxCounterService.mailMoved(mail, fromFolder);
+        }
     }
 
     /**
      * Permanently delete emails that have been in trash for more than 30 days
      * Called by scheduled task
      */
+    @Transactional
     public void deleteOldTrashEmails() {
         java.time.LocalDateTime thirtyDaysAgo = java.time.LocalDateTime.now().minusDays(30);
         List<Mail> oldTrashMails = mailRepository.findByFolderNameAndDeletedAtBefore("trash", thirtyDaysAgo);
 
         if (!oldTrashMails.isEmpty()) {
+            Set<String> releasedBlobs = new HashSet<>();
+            for (Mail mail : oldTrashMails) {
+                if (mail.getAttachments() != null) {
+                    releasedBlobs.addAll(attachmentService.releaseAttachments(mail.getAttachments()));
+                }
+            }
+            // Owners' state rows are locked first, like every other write that changes counters
+            oldTrashMails.forEach(mailSyncService::expunged);
+            List<Long> purgedIds = oldTrashMails.stream().map(Mail::getMailId).toList();
+            mailSearchIndex.remove(purgedIds);
+            outboxService.discardForSentMails(purgedIds);
             mailRepository.deleteAll(oldTrashMails);
+            // Blob rows can only go once the attachment rows referencing them are deleted
+            mailRepository.flush();
+            attachmentService.deleteUnreferencedBlobs(releasedBlobs);
+            releaseBodies(oldTrashMails);
+            oldTrashMails.forEach(mailboxCounterService::mailRemoved);
             System.out.println("Deleted " + oldTrashMails.size() + " old emails from trash");
         }
     }
 
+    // Shared bodies go away with their last mailbox copy
+    private void releaseBodies(List<Mail> deletedMails) {
+        List<Long> bodyIds = deletedMails.stream()
+                .map(Mail::getMessageBody)
+                .filter(java.util.Objects::nonNull)
+                .map(MessageBody::getId)
+                .distinct()
+                .toList();
+        if (!bodyIds.isEmpty()) {
+            mailRepository.flush();
+            messageBodyRepository.deleteUnreferenced(bodyIds);
+        }
+    }
+
     /**
      * Copy an email to a custom folder
      * Creates a duplicate of the email with the specified folder name
      * @param mailId ID of the email to copy
      * @param folderName Name of the target folder
      */
+    @Transactional
     public void copyEmailToFolder(Long mailId, String folderName) {
         // Get original email
         Mail originalMail = getMailById(mailId);
@@ -179,7 +331,7 @@ public class MailService {
                 .senderRel(originalMail.getSenderRel()) // Same user reference (not a collection)
                 .receiver(originalMail.getReceiver())
                 .subject(originalMail.getSubject())
-                .body(originalMail.getBody())
+                .messageBody(originalMail.shareBody()) // Same body row, no second copy of the text
                 .priority(originalMail.getPriority())
                 .timestamp(java.time.LocalDateTime.now()) // New timestamp for the copy
                 .folderName(folderName.toUpperCase()) // Store folder name in uppercase
@@ -192,53 +344,46 @@ public class MailService {
             copiedMail.setReceiverRel(new ArrayList<>(originalMail.getReceiverRel()));
         }
 
-        if (originalMail.getAttachments() != null) {
-            copiedMail.setAttachments(new ArrayList<>(originalMail.getAttachments()));
-        }
-
         // Save the mail
+        mailSyncService.touch(copiedMail);
         mailRepository.save(copiedMail);
+        mailboxCounterService.mailAdded(copiedMail);
+        mailSearchIndex.index(copiedMail);
+
+        // The copy gets its own attachment rows referencing the same stored files
+        if (originalMail.getAttachments() != null && !originalMail.getAttachments().isEmpty()) {
+            try {
+                attachmentService.copyAttachments(originalMail.getAttachments(), List.of(copiedMail));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to copy attachments of mail " + mailId, e);
+            }
+        }
     }
 
     /**
-     * Get mail with all attachments including file data
+     * Get mail with its attachment descriptors
      *
      * @param mailId the ID of the mail
-     * @return EmailViewDto with attachments containing file data as Base64
+     * @param inline whether small attachments should embed their Base64 content
+     * @return EmailViewDto with attachment descriptors (download URLs)
      * @throws IOException if file reading fails
      */
     
-    public EmailViewDto getMailWithAttachments(Long mailId) throws IOException {
-        return getMailCommand.execute(mailId);
+    public EmailViewDto getMailWithAttachments(Long mailId, boolean inline) throws IOException {
+        return getMailCommand.execute(mailId, inline);
     }
 
     /**
-     * Convert Mail entity to EmailViewDto with FULL attachment data (Base64 encoded)
-     * Loads all attachment files and encodes them for frontend
+     * Convert Mail entity to EmailViewDto with attachment descriptors
+     * File content is not embedded - the frontend downloads it from each descriptor's URL
      */
     private EmailViewDto convertToEmailViewDto(Mail mail) {
-        // Load full attachment data with Base64 encoding
         List<AttachmentDTO> attachmentDTOs = null;
         if (mail.getAttachments() != null && !mail.getAttachments().isEmpty()) {
             attachmentDTOs = new ArrayList<>();
             for (Attachment attachment : mail.getAttachments()) {
                 try {
-                    // Read file from disk
-                    byte[] fileData = attachmentService.readAttachmentFile(attachment.getFilePath());
-
-                    // Encode to Base64
-                    String base64Data = Base64.getEncoder().encodeToString(fileData);
-
-                    // Create DTO with full data
-                    AttachmentDTO dto = AttachmentDTO.builder()
-                            .id(attachment.getId())
-                            .fileName(attachment.getFileName())
-                            .contentType(attachment.getContentType())
-                            .fileSize(attachment.getFileSize())
-                            .fileData(base64Data)
-                            .build();
-
-                    attachmentDTOs.add(dto);
+                    attachmentDTOs.add(attachmentService.toDescriptor(attachment, false));
                 } catch (IOException e) {
                     // Log error but continue with other attachments
                     System.err.println("Failed to load attachment " + attachment.getId() + ": " + e.getMessage());
@@ -256,119 +401,77 @@ public class MailService {
                 .priority(mail.getPriority())
                 .folderName(mail.getFolderName())
                 .isRead(mail.isRead())
-                .attachments(attachmentDTOs)           // Full attachment data with Base64
+                .draftVersion("DRAFTS".equals(mail.getFolderName()) ? mail.getDraftVersion() : null)
+                .attachments(attachmentDTOs)           // Descriptors only, bytes are streamed on download
                 .build();
     }
 
-    public List<Mail> getSortedMails(String email, String critera, boolean order){
-
-        List<Mail> mailList = mailRepository.findByReceiverAndFolderNameOrderBySenderAsc(email, "INBOX");
-        
-        switch(critera){
-            case "sender":
-                if(order){
-                   PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                            ((a, b) -> a.getSender().toLowerCase().compareTo(b.getSender().toLowerCase()))
-                   );
-                   mailQueue.addAll(mailList);
-                   mailList.clear();
-                   while (!mailQueue.isEmpty())
-                        mailList.add(mailQueue.poll());
-                    return mailList;
-                   //return mailRepository.findByReceiverAndFolderNameOrderBySenderAsc(email, "INBOX"); 
-                }
-                else{
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                                ((a, b) -> b.getSender().toLowerCase().compareTo(a.getSender().toLowerCase()))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderBySenderDesc(email, "INBOX");
-                }
-                     
-                
-            case "subject":
-                if(order){
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                            ((a, b) -> a.getSubject().toLowerCase().compareTo(b.getSubject().toLowerCase()))
-                   );
-                   mailQueue.addAll(mailList);
-                   mailList.clear();
-                   while (!mailQueue.isEmpty())
-                        mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderBySubjectAsc(email, "INBOX");
-                }
- 
-                else{
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                                ((a, b) -> b.getSubject().toLowerCase().compareTo(a.getSubject().toLowerCase()))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderBySubjectDesc(email, "INBOX"); 
-                }
-                    
-
-            case "date":
-                if(order){
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                            ((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                        return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderByTimestampAsc(email, "INBOX");
-                }
-                else{
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                                ((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderByTimestampDesc(email, "INBOX"); 
-                }
+    /**
+     * Get the first page of the inbox sorted by one or more criteria
+     * Kept for clients of the old list endpoint; it no longer loads the whole
+     * folder, so follow-up pages come from getSortedMailsPage
+     *
+     * @param email owner of the inbox
+     * @param criteria sender, subject, date or priority - comma separated for secondary keys (e.g. "priority,date")
+     * @param order true for ascending, false for descending
+     * @param limit page size (defaults to 50, capped at 200)
+     * @return the first inbox mail summaries in the requested order
+     */
+    public List<MailSummaryDto> getSortedMails(String email, String criteria, boolean order, Integer limit) {
+        return getSortedMailsPage(email, criteria, order, "INBOX", null, limit).getItems();
+    }
 
-            case "priority":
-                if(order){
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                            ((a, b) -> Integer.valueOf(a.getPriority()).compareTo(Integer.valueOf(b.getPriority())))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderByPriorityAsc(email, "INBOX");
-                }
-                   
-                else{
-                    PriorityQueue<Mail> mailQueue = new PriorityQueue<Mail>(mailList.size(), 
-                                ((a, b) -> Integer.valueOf(b.getPriority()).compareTo(Integer.valueOf(a.getPriority())))
-                    );
-                    mailQueue.addAll(mailList);
-                    mailList.clear();
-                    while (!mailQueue.isEmpty())
-                            mailList.add(mailQueue.poll());
-                    return mailList;
-                    //return mailRepository.findByReceiverAndFolderNameOrderByPriorityDesc(email, "INBOX");
-                }
-                    
+    /**
+     * Get one page of a folder sorted by one or more criteria
+     * The ORDER BY runs in the database on the normalized, indexed sort columns
+     * and pages are read with keyset positions, so each request costs O(page)
+     *
+     * @param email owner of the folder
+     * @param criteria sender, subject, date or priority - comma separated for secondary keys (e.g. "priority,date")
+     * @param order true for ascending, false for descending
+     * @param folderName folder to sort (INBOX by default)
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit page size (defaults to 50, capped at 200)
+     * @return the page of mail summaries and the cursor of the next page (null on the last page)
+     */
+    public MailPageDto<MailSummaryDto> getSortedMailsPage(String email, String criteria, boolean order,
+                                                          String folderName, String cursor, Integer limit) {
+        Long userId = userDirectory.getUserId(email);
+
+        List<MailSortKey> sortKeys = MailSortKey.parseAll(criteria);
+        ScrollPosition position = (cursor == null || cursor.isBlank())
+                ? ScrollPosition.keyset()
+                : mailSortEngine.decodeCursor(cursor, sortKeys);
+
+        Window<Mail> window = mailRepository.findByOwnerIdAndFolderName(
+                userId, folderName, position, mailSortEngine.toSort(sortKeys, order), Limit.of(resolvePageSize(limit)));
+
+        // The window only fixes the order; the rows sent back come from the summary projection,
+        // so no body or attachment is loaded
+        List<Long> mailIds = window.stream().map(Mail::getMailId).collect(Collectors.toList());
+        Map<Long, MailSummaryDto> summaries = new HashMap<>();
+        if (!mailIds.isEmpty()) {
+            for (MailSummaryDto summary : mailRepository.findSummariesByIds(mailIds)) {
+                summaries.put(summary.getId(), summary);
+            }
+        }
 
-            default:
-                return mailRepository.findByReceiver(email);
+        String nextCursor = null;
+        if (window.hasNext()) {
+            nextCursor = mailSortEngine.encodeCursor(window.positionAt(window.size() - 1));
         }
+
+        return MailPageDto.<MailSummaryDto>builder()
+                .items(mailIds.stream()
+                        .map(summaries::get)
+                        .filter(summary -> summary != null)
+                        .collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private int resolvePageSize(Integer limit) {
+        return (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
     }
 
     /**
@@ -379,7 +482,31 @@ public class MailService {
      * @return List of custom folder names
      */
     public List<String> getUserCustomFolders(Long userId) {
-        return mailRepository.findDistinctFolderNamesByOwnerId(userId);
+        return mailboxCounterService.getCustomFolderNames(userId);
+    }
+
+    /**
+     * Get one page of what changed in a user's mailbox after a mod-sequence
+     *
+     * @param userEmail owner of the mailbox
+     * @param since highestModSeq returned by the previous call (0 on first sync)
+     * @param limit most entries per page (defaults to 50, capped at 200)
+     * @return changed mails, expunged mail IDs, the highestModSeq reached and whether more remain
+     */
+    public MailChangesDto getChangesSince(String userEmail, long since, Integer limit) {
+        Long userId = userDirectory.getUserId(userEmail);
+        return mailSyncService.getChangesSince(userId, since, resolvePageSize(limit));
+    }
+
+    /**
+     * Get every folder of a user with its total and unread counts
+     * Served from the materialized mailbox_counters table
+     *
+     * @param userId ID of the user
+     * @return List of folders with their counts
+     */
+    public List<FolderCountDto> getMailboxSummary(Long userId) {
+        return mailboxCounterService.getSummary(userId);
     }
 
 }
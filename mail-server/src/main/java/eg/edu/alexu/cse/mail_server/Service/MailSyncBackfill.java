@@ -0,0 +1,37 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Gives mails stored before delta sync existed a mod-sequence at startup
+ * Until then they sit at 0 and a client syncing from 0 would never see them
+ */
+@Component
+@RequiredArgsConstructor
+public class MailSyncBackfill {
+    private static final int BATCH_SIZE = 1000;
+
+    private final MailRepository mailRepository;
+    private final MailSyncService mailSyncService;
+
+    // One transaction per batch, so the state row of an owner is never locked for long
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillModSeqs() {
+        long stamped = 0;
+        for (Long ownerId : mailRepository.findOwnerIdsWithoutModSeq()) {
+            int batch;
+            do {
+                batch = mailSyncService.backfillModSeqs(ownerId, BATCH_SIZE);
+                stamped += batch;
+            } while (batch == BATCH_SIZE);
+        }
+        if (stamped > 0) {
+            System.out.println("Backfilled mod-sequences for " + stamped + " emails");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MailExpunge;
+import eg.edu.alexu.cse.mail_server.Repository.MailExpungeRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxStateRepository;
+import eg.edu.alexu.cse.mail_server.dto.MailChangesDto;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Maintains the per-user modification sequence used for delta sync
+ * Every write to a mailbox stamps the affected mail with the next value,
+ * so a client only has to ask for rows above the last value it saw
+ */
+@Service
+@RequiredArgsConstructor
+public class MailSyncService {
+    private final MailboxStateRepository mailboxStateRepository;
+    private final MailExpungeRepository mailExpungeRepository;
+    private final MailRepository mailRepository;
+
+    // Tombstones are kept this long; clients offline for longer get a full resync
+    @Value("${mail.sync.expunge-retention-days:30}")
+    private long expungeRetentionDays;
+
+    /**
+     * Stamp a mail with the next mod-sequence of its owner
+     * Call before saving an inserted, flagged or moved mail
+     */
+    @Transactional
+    public void touch(Mail mail) {
+        mail.setModSeq(nextModSeq(ownerIdOf(mail)));
+    }
+
+    /**
+     * Stamp many new mails at once (a send fan-out)
+     * Owners are bumped with one UPDATE per distinct copy count - normally
+     * a single statement - instead of one round trip per mail
+     */
+    @Transactional
+    public void touchAll(List<Mail> mails) {
+        Map<Long, List<Mail>> byOwner = new LinkedHashMap<>();
+        for (Mail mail : mails) {
+            byOwner.computeIfAbsent(ownerIdOf(mail), id -> new ArrayList<>()).add(mail);
+        }
+        if (byOwner.isEmpty()) {
+            return;
+        }
+
+        // State rows are never deleted, so once every owner has one the batch UPDATE covers them all;
+        // the upsert adds 0 to a row another writer created meanwhile
+        Set<Long> known = findHighestModSeqs(byOwner.keySet()).keySet();
+        for (Long ownerId : byOwner.keySet()) {
+            if (!known.contains(ownerId)) {
+                mailboxStateRepository.upsert(ownerId, 0);
+            }
+        }
+
+        Map<Integer, List<Long>> ownersByDelta = new HashMap<>();
+        byOwner.forEach((ownerId, owned) ->
+                ownersByDelta.computeIfAbsent(owned.size(), n -> new ArrayList<>()).add(ownerId));
+        ownersByDelta.forEach((delta, ownerIds) -> mailboxStateRepository.incrementAll(ownerIds, delta));
+
+        Map<Long, Long> highest = findHighestModSeqs(byOwner.keySet());
+        byOwner.forEach((ownerId, owned) -> {
+            long seq = highest.get(ownerId) - owned.size();
+            for (Mail mail : owned) {
+                mail.setModSeq(++seq);
+            }
+        });
+    }
+
+    /**
+     * Record that a mail was permanently deleted
+     */
+    @Transactional
+    public void expunged(Mail mail) {
+        Long ownerId = ownerIdOf(mail);
+        mailExpungeRepository.save(MailExpunge.builder()
+                .ownerId(ownerId)
+                .mailId(mail.getMailId())
+                .modSeq(nextModSeq(ownerId))
+                .expungedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * One page of what changed in a user's mailbox after the given mod-sequence
+     * Changed mails and expunges are merged in mod-sequence order and cut after
+     * limit entries; the returned highestModSeq is where the next page starts
+     *
+     * @param userId owner of the mailbox
+     * @param since last highestModSeq the client saw (0 for everything stamped so far)
+     * @param limit most entries (changed plus expunged) to return
+     * @return changed mails, expunged mail IDs, the mod-sequence reached and whether more remain
+     */
+    @Transactional
+    public MailChangesDto getChangesSince(Long userId, long since, int limit) {
+        Long highest = mailboxStateRepository.findHighestModSeq(userId);
+        long upTo = highest == null ? 0 : highest;
+
+        Long pruned = mailboxStateRepository.findPrunedModSeq(userId);
+        if (since > 0 && pruned != null && since < pruned) {
+            return MailChangesDto.builder()
+                    .highestModSeq(upTo)
+                    .fullResyncRequired(true)
+                    .changed(List.of())
+                    .expunged(List.of())
+                    .build();
+        }
+        if (since >= upTo) {
+            return MailChangesDto.builder()
+                    .highestModSeq(upTo)
+                    .changed(List.of())
+                    .expunged(List.of())
+                    .build();
+        }
+
+        // limit + 1 rows of each kind are enough to find the limit lowest of both
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<MailSummaryDto> changed = mailRepository.findChangedSince(userId, since, upTo, page);
+        List<MailExpunge> expunged = mailExpungeRepository.findExpungedSince(userId, since, upTo, page);
+
+        long reached = upTo;
+        boolean hasMore = changed.size() + expunged.size() > limit;
+        if (hasMore) {
+            // Mod-sequences are unique per owner, so cutting at the limit-th lowest keeps exactly limit entries
+            List<Long> seqs = new ArrayList<>();
+            changed.forEach(mail -> seqs.add(mail.getModSeq()));
+            expunged.forEach(expunge -> seqs.add(expunge.getModSeq()));
+            Collections.sort(seqs);
+            long mark = seqs.get(limit - 1);
+            changed = changed.stream().filter(mail -> mail.getModSeq() <= mark).collect(Collectors.toList());
+            expunged = expunged.stream().filter(expunge -> expunge.getModSeq() <= mark).collect(Collectors.toList());
+            reached = mark;
+        }
+
+        return MailChangesDto.builder()
+                .highestModSeq(reached)
+                .hasMore(hasMore)
+                .changed(changed)
+                .expunged(expunged.stream().map(MailExpunge::getMailId).collect(Collectors.toList()))
+                .build();
+    }
+
+    /**
+     * Stamp one owner's mails stored before mod-sequences existed
+     * A block of sequence values is reserved under the state row lock,
+     * so stamps written concurrently never collide with the backfilled ones
+     *
+     * @return number of mails stamped
+     */
+    @Transactional
+    public int backfillModSeqs(Long ownerId, int batchSize) {
+        List<Long> mailIds = mailRepository.findIdsWithoutModSeq(ownerId, PageRequest.of(0, batchSize));
+        if (mailIds.isEmpty()) {
+            return 0;
+        }
+        mailboxStateRepository.upsert(ownerId, mailIds.size());
+        long seq = mailboxStateRepository.findHighestModSeq(ownerId) - mailIds.size();
+        for (Long mailId : mailIds) {
+            mailRepository.assignModSeq(mailId, ++seq);
+        }
+        return mailIds.size();
+    }
+
+    /**
+     * Drop tombstones older than mail.sync.expunge-retention-days
+     * Each owner's pruned mark is raised first, so getChangesSince can tell a
+     * client that synced below it to start over instead of missing removals
+     */
+    @Scheduled(fixedDelayString = "${mail.sync.prune-ms:3600000}")
+    @Transactional
+    public void pruneExpunges() {
+        LocalDateTime before = LocalDateTime.now().minusDays(expungeRetentionDays);
+        for (Object[] row : mailExpungeRepository.findPruneMarks(before)) {
+            Long ownerId = (Long) row[0];
+            long mark = ((Number) row[1]).longValue();
+            mailboxStateRepository.raisePrunedModSeq(ownerId, mark);
+            mailExpungeRepository.deleteUpTo(ownerId, mark);
+        }
+    }
+
+    // Plain UPDATE for the common case; the upsert only for a user's first change
+    private long nextModSeq(Long ownerId) {
+        if (mailboxStateRepository.increment(ownerId) == 0) {
+            mailboxStateRepository.upsert(ownerId, 1);
+        }
+        return mailboxStateRepository.findHighestModSeq(ownerId);
+    }
+
+    private Map<Long, Long> findHighestModSeqs(Collection<Long> ownerIds) {
+        Map<Long, Long> highest = new HashMap<>();
+        for (Object[] row : mailboxStateRepository.findHighestModSeqs(ownerIds)) {
+            highest.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return highest;
+    }
+
+    // ownerId is read-only on Mail and stays null until reload, so prefer the relation
+    private Long ownerIdOf(Mail mail) {
+        return mail.getOwner() != null ? mail.getOwner().getUserId() : mail.getOwnerId();
+    }
+}
@@ -0,0 +1,39 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rebuilds the mailbox counters of users that were not counted with the
+ * current MailboxCounterService.COUNTERS_VERSION (existing mailboxes after
+ * an upgrade). Requests may already be served meanwhile; their deltas are
+ * folded into the rebuilt counts
+ */
+@Component
+@RequiredArgsConstructor
+public class MailboxCounterRebuild {
+    private final MailRepository mailRepository;
+    private final MailboxCounterService mailboxCounterService;
+
+    // One transaction per user; a user that fails keeps its old version and is retried at the next start
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildCounters() {
+        int rebuilt = 0;
+        for (Long ownerId : mailRepository.findOwnerIdsWithCountersBefore(MailboxCounterService.COUNTERS_VERSION)) {
+            try {
+                if (mailboxCounterService.rebuild(ownerId)) {
+                    rebuilt++;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to rebuild mailbox counters of user " + ownerId + ": " + e.getMessage());
+            }
+        }
+        if (rebuilt > 0) {
+            System.out.println("Rebuilt mailbox counters for " + rebuilt + " users");
+        }
+    }
+}
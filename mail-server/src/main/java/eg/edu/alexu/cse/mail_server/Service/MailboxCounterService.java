@@ -0,0 +1,157 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxCounterRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxStateRepository;
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the mailbox_counters table in step with the mail table
+ * Callers report each change (insert, remove, move, read flag) right after
+ * writing the mail, inside the same transaction
+ */
+@Service
+@RequiredArgsConstructor
+public class MailboxCounterService {
+    // Raise to have every user's counters rebuilt from the mail table at the next start
+    public static final int COUNTERS_VERSION = 1;
+
+    private final MailboxCounterRepository counterRepository;
+    private final MailRepository mailRepository;
+    private final MailboxStateRepository mailboxStateRepository;
+
+    /**
+     * A mail was stored in a folder
+     */
+    @Transactional
+    public void mailAdded(Mail mail) {
+        adjust(ownerIdOf(mail), mail.getFolderName(), 1, mail.isRead() ? 0 : 1);
+    }
+
+    /**
+     * Many mails were stored at once (a send fan-out)
+     * Owners sharing a folder and delta are updated with a single statement
+     */
+    @Transactional
+    public void mailsAdded(List<Mail> mails) {
+        Map<CounterKey, long[]> deltas = new LinkedHashMap<>();
+        for (Mail mail : mails) {
+            long[] delta = deltas.computeIfAbsent(
+                    new CounterKey(ownerIdOf(mail), mail.getFolderName()), key -> new long[2]);
+            delta[0]++;
+            if (!mail.isRead()) {
+                delta[1]++;
+            }
+        }
+
+        Map<CounterDelta, List<Long>> ownersByDelta = new LinkedHashMap<>();
+        deltas.forEach((key, delta) -> ownersByDelta
+                .computeIfAbsent(new CounterDelta(key.folderName(), delta[0], delta[1]), d -> new ArrayList<>())
+                .add(key.ownerId()));
+
+        ownersByDelta.forEach((delta, ownerIds) -> {
+            Set<Long> existing = new HashSet<>(counterRepository.findOwnerIdsWithFolder(ownerIds, delta.folderName()));
+            if (!existing.isEmpty()) {
+                counterRepository.adjustAll(existing, delta.folderName(), delta.total(), delta.unread());
+            }
+            // Rows created meanwhile by another writer are still applied once
+            for (Long ownerId : ownerIds) {
+                if (!existing.contains(ownerId)) {
+                    counterRepository.upsert(ownerId, delta.folderName(), delta.total(), delta.unread());
+                }
+            }
+        });
+    }
+
+    /**
+     * A mail was permanently deleted from its folder
+     */
+    @Transactional
+    public void mailRemoved(Mail mail) {
+        adjust(ownerIdOf(mail), mail.getFolderName(), -1, mail.isRead() ? 0 : -1);
+    }
+
+    /**
+     * A mail moved from one folder to another (mail already carries the new folder)
+     */
+    @Transactional
+    public void mailMoved(Mail mail, String fromFolder) {
+        long unread = mail.isRead() ? 0 : 1;
+        adjust(ownerIdOf(mail), fromFolder, -1, -unread);
+        adjust(ownerIdOf(mail), mail.getFolderName(), 1, unread);
+    }
+
+    /**
+     * The read flag of a mail changed (mail already carries the new flag)
+     */
+    @Transactional
+    public void readFlagChanged(Mail mail) {
+        adjust(ownerIdOf(mail), mail.getFolderName(), 0, mail.isRead() ? -1 : 1);
+    }
+
+    /**
+     * Every folder of a user with its total and unread counts
+     */
+    public List<FolderCountDto> getSummary(Long userId) {
+        return counterRepository.findSummaryByOwnerId(userId);
+    }
+
+    /**
+     * Non-empty user-defined folders (excluding system folders)
+     */
+    public List<String> getCustomFolderNames(Long userId) {
+        return counterRepository.findCustomFolderNamesByOwnerId(userId);
+    }
+
+    /**
+     * Recount one user's folders from the mail table, once per COUNTERS_VERSION
+     * Rows that deltas created before the rebuild (requests served before
+     * startup finished) are overwritten with the real counts. The user's
+     * mailbox_state row is locked first; every write that changes counters
+     * takes that lock (MailSyncService.touch/expunged) before it changes
+     * them, so no concurrent delta is lost or counted twice
+     *
+     * @return whether the counters were rebuilt (false if already done for this version)
+     */
+    @Transactional
+    public boolean rebuild(Long ownerId) {
+        mailboxStateRepository.upsert(ownerId, 0);
+        if (mailboxStateRepository.claimCountersVersion(ownerId, COUNTERS_VERSION) == 0) {
+            return false;
+        }
+        counterRepository.clearOwner(ownerId);
+        for (Object[] row : mailRepository.countByFolder(ownerId)) {
+            counterRepository.setCounts(ownerId, (String) row[0], ((Number) row[1]).longValue(),
+                    row[2] == null ? 0 : ((Number) row[2]).longValue());
+        }
+        return true;
+    }
+
+    // Plain UPDATE for the common case; the upsert only for a folder's first mail
+    private void adjust(Long ownerId, String folderName, long total, long unread) {
+        if (counterRepository.adjust(ownerId, folderName, total, unread) == 0) {
+            counterRepository.upsert(ownerId, folderName, total, unread);
+        }
+    }
+
+    private record CounterKey(Long ownerId, String folderName) {}
+
+    private record CounterDelta(String folderName, long total, long unread) {}
+
+    // ownerId is read-only on Mail and stays null until reload, so prefer the relation
+    private Long ownerIdOf(Mail mail) {
+        return mail.getOwner() != null ? mail.getOwner().getUserId() : mail.getOwnerId();
+    }
+}
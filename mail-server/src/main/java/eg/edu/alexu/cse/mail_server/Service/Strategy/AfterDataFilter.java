@@ -4,6 +4,7 @@ import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -29,6 +30,12 @@ public class AfterDataFilter implements FilterStrategy {
         return localDate.isAfter(date);
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        LocalDateTime limit = date;
+        return (root, query, cb) -> cb.greaterThan(root.get("timestamp"), limit);
+    }
+
     public int getScore(Mail mail) {
         LocalDateTime mailDate = Optional.ofNullable(mail.getTimestamp())
                 .orElseThrow(() -> new NoSuchElementException("Mail timestamp is empty"));
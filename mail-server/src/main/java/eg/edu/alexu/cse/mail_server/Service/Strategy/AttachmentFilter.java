@@ -146,7 +146,11 @@ public class AttachmentFilter implements FilterStrategy{
             return att.getIndexedContent();
         }
 
+        // Extraction is queued, skipped or failed - never parse on the search path
+        if (att.getIndexingStatus() != null) return "";
+
         // 2. SLOW PATH: Parse file (Only use this for debugging or recovery)
+        if (att.getFilePath() == null) return "";
         Path path = Paths.get(att.getFilePath());
         if (!Files.exists(path)) return "";
 
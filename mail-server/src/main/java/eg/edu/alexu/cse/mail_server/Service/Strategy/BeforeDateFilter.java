@@ -4,6 +4,7 @@ import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -28,6 +29,12 @@ public class BeforeDateFilter implements FilterStrategy {
         return localDate.isBefore(date);
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        LocalDateTime limit = date;
+        return (root, query, cb) -> cb.lessThan(root.get("timestamp"), limit);
+    }
+
     public int getScore(Mail mail) {
         long daysDifference = java.time.Duration.between(mail.getTimestamp(),date).toDays();
 
@@ -4,6 +4,7 @@ import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
@@ -30,6 +31,12 @@ public class ExactDateFilter implements FilterStrategy {
         return localDate.isEqual(date);
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        LocalDateTime target = date;
+        return (root, query, cb) -> cb.equal(root.get("timestamp"), target);
+    }
+
     public int getScore(Mail mail) {
         LocalDateTime localDate = Optional.ofNullable(mail.getTimestamp()).
                 orElseThrow(() ->new NoSuchElementException("")) ;
@@ -1,6 +1,7 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import org.springframework.data.jpa.domain.Specification;
 
 /**
  * The current Design for the filters return boolean for each email
@@ -12,4 +13,12 @@ public interface FilterStrategy {
     public boolean filter(Mail mail);
 
     public int getScore(Mail mail);
+
+    /**
+     * The same condition as a JPA predicate, so it can run in the mailbox query
+     * Filters that can only be evaluated in Java (text relevance, lookups) return null
+     */
+    default Specification<Mail> toSpecification() {
+        return null;
+    }
 }
@@ -1,14 +1,28 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.Objects;
 
 public class FolderFilter implements FilterStrategy{
     private String folder ;
+    // Folder names match case-insensitively, here and in toSpecification
     @Override
     public boolean filter(Mail mail) {
-        return Objects.equals(mail.getFolderName(), folder);
+        if (folder == null || mail.getFolderName() == null) {
+            return Objects.equals(mail.getFolderName(), folder);
+        }
+        return mail.getFolderName().equalsIgnoreCase(folder);
+    }
+
+    // LOWER on both sides so the result does not depend on the column's collation
+    @Override
+    public Specification<Mail> toSpecification() {
+        String target = folder;
+        return (root, query, cb) -> target == null
+                ? cb.isNull(root.get("folderName"))
+                : cb.equal(cb.lower(root.get("folderName")), target.toLowerCase());
     }
 
     @Override
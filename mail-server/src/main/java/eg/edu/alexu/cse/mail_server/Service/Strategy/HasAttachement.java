@@ -1,6 +1,7 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import org.springframework.data.jpa.domain.Specification;
 
 public class HasAttachement implements FilterStrategy {
 
@@ -18,6 +19,14 @@ public class HasAttachement implements FilterStrategy {
         return (filter(mail) ? 100 : 0);
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        boolean wanted = hasAttachments;
+        return (root, query, cb) -> wanted
+                ? cb.isNotEmpty(root.get("attachments"))
+                : cb.isEmpty(root.get("attachments"));
+    }
+
     public boolean isHasAttachments() {
         return hasAttachments;
     }
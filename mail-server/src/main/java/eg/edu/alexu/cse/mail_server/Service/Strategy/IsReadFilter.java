@@ -4,6 +4,7 @@ import eg.edu.alexu.cse.mail_server.Entity.Mail;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
@@ -22,6 +23,12 @@ public class IsReadFilter implements FilterStrategy {
         return state == isRead;
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        boolean read = isRead;
+        return (root, query, cb) -> cb.equal(root.get("isRead"), read);
+    }
+
     public int getScore(Mail mail) {
         boolean state = Optional.of(mail.isRead()).orElse(false);
         return state == isRead ? 100 : 0;
@@ -1,10 +1,18 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
+import eg.edu.alexu.cse.mail_server.Entity.Attachment;
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.dto.SearchCursor;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 /**
@@ -15,26 +23,206 @@ import java.util.stream.Collectors;
  * Also this class can be extended easily to
  * manage search we will just use decorated filter that
  * wraps all filters (Or decorator)
+ *
+ * Each matching mail is scored exactly once; ranking then only compares
+ * the stored scores
+ *
+ * Given a pool, candidate lists longer than the threshold are split in
+ * halves (fork-join) until each part is at most threshold mails, and the
+ * parts are evaluated on the pool. Workers never touch the managed
+ * entities: the fields the filters read, including those of the
+ * attachments, are copied into detached snapshots on the calling thread first
  */
 
 public class MailFilter {
+    // Best first: higher score, then newer, then higher id
+    private static final Comparator<ScoredMail> RANKING = Comparator
+            .comparingInt(ScoredMail::score)
+            .thenComparing(scored -> timestampOf(scored.mail()))
+            .thenComparing(scored -> scored.mail().getMailId(), Comparator.nullsFirst(Comparator.naturalOrder()))
+            .reversed();
+
     @Getter
     @Setter
     private FilterStrategy filterStrategy ;
 
+    // Parallel evaluation; a null pool keeps everything on the calling thread
+    private ForkJoinPool pool;
+    private int threshold;
+
     public MailFilter(FilterStrategy filter) {
         filterStrategy = filter;
     }
 
     public MailFilter() {}
 
+    public MailFilter(FilterStrategy filter, ForkJoinPool pool, int threshold) {
+        filterStrategy = filter;
+        this.pool = pool;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    /**
+     * A matching mail with its score
+     */
+    public record ScoredMail(Mail mail, int score) {
+
+        public SearchCursor toCursor() {
+            return new SearchCursor(score, mail.getTimestamp(), mail.getMailId());
+        }
+    }
+
+    /**
+     * One page of ranked matches
+     * @param matches the page, best first
+     * @param hasMore whether more matches rank after the last one
+     */
+    public record RankedPage(List<ScoredMail> matches, boolean hasMore) {
+    }
+
     public List<Mail> getEmails(List<Mail> mails) {
-        return mails.stream().
-                filter(mail -> filterStrategy.filter(mail)).
-                sorted((mail1,mail2) -> Integer.compare(
-                        filterStrategy.getScore(mail2),
-                        filterStrategy.getScore(mail1))).
-                collect(Collectors.toList());
+        List<ScoredMail> scored = score(mails);
+        // Stable sort keeps the input order (newest first) between equal scores
+        scored.sort(Comparator.comparingInt(ScoredMail::score).reversed());
+        return scored.stream().map(ScoredMail::mail).collect(Collectors.toList());
+    }
+
+    /**
+     * The best limit matches ranking after the cursor
+     * Candidates are filtered and scored once each and the matches go
+     * through a heap of limit + 1 entries, so the match set is never sorted
+     *
+     * @param mails candidates
+     * @param after last result of the previous page, or null for the first page
+     * @param limit page size
+     * @return the page and whether another one follows
+     */
+    public RankedPage getTopEmails(List<Mail> mails, SearchCursor after, int limit) {
+        // Worst of the kept matches at the head, so it is the one evicted
+        PriorityQueue<ScoredMail> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (ScoredMail scored : score(mails)) {
+            if (after != null && !ranksAfter(scored, after)) {
+                continue;
+            }
+            best.offer(scored);
+            if (best.size() > limit + 1) {
+                best.poll();
+            }
+        }
+
+        List<ScoredMail> page = new ArrayList<>(best);
+        page.sort(RANKING);
+        boolean hasMore = page.size() > limit;
+        return new RankedPage(hasMore ? page.subList(0, limit) : page, hasMore);
+    }
+
+    // Matches in candidate order, so ties keep the order the mails were loaded in
+    private List<ScoredMail> score(List<Mail> mails) {
+        if (pool == null || mails.size() <= threshold) {
+            return scoreRange(mails, mails, 0, mails.size());
+        }
+        List<Mail> snapshots = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            snapshots.add(snapshot(mail));
+        }
+        return pool.invoke(new ScoreTask(mails, snapshots, 0, mails.size()));
+    }
+
+    // Evaluates snapshots.get(i) and reports a match as mails.get(i)
+    private List<ScoredMail> scoreRange(List<Mail> mails, List<Mail> snapshots, int from, int to) {
+        List<ScoredMail> scored = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Mail candidate = snapshots.get(i);
+            if (filterStrategy.filter(candidate)) {
+                scored.add(new ScoredMail(mails.get(i), filterStrategy.getScore(candidate)));
+            }
+        }
+        return scored;
+    }
+
+    private class ScoreTask extends RecursiveTask<List<ScoredMail>> {
+        private final List<Mail> mails;
+        private final List<Mail> snapshots;
+        private final int from;
+        private final int to;
+
+        ScoreTask(List<Mail> mails, List<Mail> snapshots, int from, int to) {
+            this.mails = mails;
+            this.snapshots = snapshots;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ScoredMail> compute() {
+            if (to - from <= threshold) {
+                return scoreRange(mails, snapshots, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask right = new ScoreTask(mails, snapshots, middle, to);
+            right.fork();
+            List<ScoredMail> scored = new ScoreTask(mails, snapshots, from, middle).compute();
+            scored.addAll(right.join());
+            return scored;
+        }
+    }
+
+    /**
+     * Detached copy with every field a filter reads
+     * Loads the body and the attachment rows here, on the thread that owns
+     * the persistence context, so the copy can be read from any thread
+     */
+    private static Mail snapshot(Mail mail) {
+        List<Attachment> attachments = null;
+        if (mail.getAttachments() != null) {
+            attachments = new ArrayList<>(mail.getAttachments().size());
+            for (Attachment attachment : mail.getAttachments()) {
+                attachments.add(snapshot(attachment));
+            }
+        }
+        return Mail.builder()
+                .mailId(mail.getMailId())
+                .ownerId(mail.getOwnerId())
+                .sender(mail.getSender())
+                .receiver(mail.getReceiver())
+                .subject(mail.getSubject())
+                .body(mail.getBody())
+                .timestamp(mail.getTimestamp())
+                .priority(mail.getPriority())
+                .folderName(mail.getFolderName())
+                .isRead(mail.isRead())
+                .attachments(attachments)
+                .build();
+    }
+
+    // The file path is resolved through the shared blob here, so the copy needs no blob
+    private static Attachment snapshot(Attachment attachment) {
+        return Attachment.builder()
+                .id(attachment.getId())
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .fileSize(attachment.getFileSize())
+                .contentHash(attachment.getContentHash())
+                .filePath(attachment.getFilePath())
+                .indexedContent(attachment.getIndexedContent())
+                .indexingStatus(attachment.getIndexingStatus())
+                .build();
+    }
+
+    private static boolean ranksAfter(ScoredMail scored, SearchCursor cursor) {
+        if (scored.score() != cursor.score()) {
+            return scored.score() < cursor.score();
+        }
+        int byTime = timestampOf(scored.mail()).compareTo(cursor.timestamp() == null ? LocalDateTime.MIN : cursor.timestamp());
+        if (byTime != 0) {
+            return byTime < 0;
+        }
+        Long mailId = scored.mail().getMailId();
+        return mailId != null && cursor.mailId() != null && mailId < cursor.mailId();
+    }
+
+    private static LocalDateTime timestampOf(Mail mail) {
+        return mail.getTimestamp() != null ? mail.getTimestamp() : LocalDateTime.MIN;
     }
 
     public FilterStrategy getFilterStrategy() {
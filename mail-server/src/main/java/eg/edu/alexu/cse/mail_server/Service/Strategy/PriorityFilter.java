@@ -1,6 +1,7 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.Optional;
 
@@ -25,6 +26,12 @@ public class PriorityFilter implements FilterStrategy {
         return diff <= 2;
     }
 
+    @Override
+    public Specification<Mail> toSpecification() {
+        int target = priority;
+        return (root, query, cb) -> cb.between(root.get("priority"), target - 2, target + 2);
+    }
+
     /**
      * Returns a score based on how close the mail's priority is to the target.
      * Exact match = 100, ±1 = 70, ±2 = 40, farther = 0
@@ -0,0 +1,30 @@
+package eg.edu.alexu.cse.mail_server.Service.Strategy;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+
+/**
+ * A filter whose condition already ran in the database (see toSpecification)
+ * Every mail loaded for the search satisfies it, so it is not evaluated again;
+ * it still contributes its score to the ranking
+ */
+public class PushedDownFilter implements FilterStrategy {
+    private final FilterStrategy appliedFilter;
+
+    public PushedDownFilter(FilterStrategy appliedFilter) {
+        this.appliedFilter = appliedFilter;
+    }
+
+    @Override
+    public boolean filter(Mail mail) {
+        return true;
+    }
+
+    @Override
+    public int getScore(Mail mail) {
+        return appliedFilter.getScore(mail);
+    }
+
+    public FilterStrategy getAppliedFilter() {
+        return appliedFilter;
+    }
+}
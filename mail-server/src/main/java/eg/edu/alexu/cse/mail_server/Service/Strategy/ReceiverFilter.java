@@ -1,22 +1,22 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
-import eg.edu.alexu.cse.mail_server.Entity.User;
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserEntry;
 
 import java.util.*;
 
 public class ReceiverFilter implements FilterStrategy {
 
     private String[] receivers;
-    private UserRepository repo ;
+    private UserDirectory directory ;
 
     public ReceiverFilter(String[] receivers) {
         this.receivers = receivers;
     }
 
-    public ReceiverFilter(UserRepository repo) {
-        this.repo = repo;
+    public ReceiverFilter(UserDirectory directory) {
+        this.directory = directory;
     }
 
     public String[] getReceivers() {
@@ -35,14 +35,14 @@ public class ReceiverFilter implements FilterStrategy {
     public boolean filter(Mail mail) {
 
         // Using optional to avoid polluting code with null checks
-        List<User> mailReceivers = getReceivers(mail) ;
+        List<UserEntry> mailReceivers = getReceivers(mail) ;
 
         if (receivers == null || receivers.length == 0) return false ;
 
         for (String receiver : receivers)
         {
             String query = receiver.trim().toLowerCase();
-            for (User user : mailReceivers) {
+            for (UserEntry user : mailReceivers) {
                 if (matchesReceiver(user,query)) return true;
             }
         }
@@ -50,14 +50,10 @@ public class ReceiverFilter implements FilterStrategy {
     }
 
 
-    private boolean matchesReceiver(User receiver, String query) {
-        String fullName = String.join(" ",
-                receiver.getFirstName(),
-                receiver.getLastName()
-        ).toLowerCase();
-
-        String email = receiver.getEmail().toLowerCase();
-        String emailLocalPart = email.split("@")[0];
+    private boolean matchesReceiver(UserEntry receiver, String query) {
+        String fullName = receiver.fullNameLower();
+        String email = receiver.emailLower();
+        String emailLocalPart = receiver.emailLocalPart();
 
         // Check if query matches as a substring in full name or email
         if (fullName.contains(query) || email.contains(query) || emailLocalPart.contains(query)) {
@@ -65,7 +61,7 @@ public class ReceiverFilter implements FilterStrategy {
         }
 
         // Token-based prefix matching
-        String[] receiverTokens = (fullName + " " + emailLocalPart).split("[\\s@._+-]+");
+        String[] receiverTokens = receiver.tokens();
         String[] queryTokens = query.split("\\s+");
 
         boolean allTokensMatched = true;
@@ -84,14 +80,14 @@ public class ReceiverFilter implements FilterStrategy {
 
     @Override
     public int getScore(Mail mail) {
-        List<User> mailReceivers = getReceivers(mail) ;
+        List<UserEntry> mailReceivers = getReceivers(mail) ;
 
         int maxScore = 0;
         // Currently the max score
         // can be updated for a better score matching
         for (String receiver : receivers) {
             String query = receiver.trim().toLowerCase();
-            for (User user : mailReceivers) {
+            for (UserEntry user : mailReceivers) {
                 int score = calculateMatchScore(user, query);
                 maxScore = Math.max(maxScore, score);
             }
@@ -99,14 +95,10 @@ public class ReceiverFilter implements FilterStrategy {
         return maxScore;
     }
 
-    private int calculateMatchScore(User receiver, String query) {
-        String fullName = String.join(" ",
-                receiver.getFirstName(),
-                receiver.getLastName()
-        ).toLowerCase();
-
-        String email = receiver.getEmail().toLowerCase();
-        String emailLocalPart = email.split("@")[0];
+    private int calculateMatchScore(UserEntry receiver, String query) {
+        String fullName = receiver.fullNameLower();
+        String email = receiver.emailLower();
+        String emailLocalPart = receiver.emailLocalPart();
 
         // Exact email match - highest score
         if (email.equals(query)) {
@@ -144,7 +136,7 @@ public class ReceiverFilter implements FilterStrategy {
         }
 
         // Token-based prefix matching
-        String[] receiverTokens = (fullName + " " + emailLocalPart).split("[\\s@._+-]+");
+        String[] receiverTokens = receiver.tokens();
         String[] queryTokens = query.split("\\s+");
 
         int matchedTokens = 0;
@@ -161,12 +153,12 @@ public class ReceiverFilter implements FilterStrategy {
         return 0;
     }
 
-    // Currently the mail support one receiver
-    List<User> getReceivers(Mail mail) {
+    // Each comma-separated receiver, resolved from the cached directory
+    List<UserEntry> getReceivers(Mail mail) {
         String[] mails = mail.getReceiver().split(",") ;
-        List<User> receivers = new ArrayList<>();
+        List<UserEntry> receivers = new ArrayList<>();
         for (String receiverStr : mails) {
-            Optional<User> receiver = repo.findByEmail(receiverStr.trim()) ;
+            Optional<UserEntry> receiver = directory.findByEmail(receiverStr) ;
             if(receiver.isEmpty()) throw new NoSuchElementException("Receiver not found");
             receivers.add(receiver.get());
         }
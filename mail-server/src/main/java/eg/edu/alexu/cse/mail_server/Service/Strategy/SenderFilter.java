@@ -1,8 +1,8 @@
 package eg.edu.alexu.cse.mail_server.Service.Strategy;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
-import eg.edu.alexu.cse.mail_server.Entity.User;
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserEntry;
 
 import java.util.Arrays;
 import java.util.List;
@@ -13,14 +13,15 @@ public class SenderFilter implements FilterStrategy {
     // For now we will use sender name
     private String[] senderNames ;
 
-    private UserRepository repo ;
+    // Senders are resolved from the cached directory, not a query per mail
+    private UserDirectory directory ;
 
     public SenderFilter(String[] senderNames) {
         this.senderNames = senderNames;
     }
 
-    public SenderFilter(UserRepository repo) {
-        this.repo = repo;
+    public SenderFilter(UserDirectory directory) {
+        this.directory = directory;
     }
 
 
@@ -32,17 +33,13 @@ public class SenderFilter implements FilterStrategy {
     public boolean filter(Mail mail) {
         if (senderNames == null || senderNames.length == 0) return false;
         
-        Optional<User> senderOpt = repo.findByEmail(mail.getSender());
+        Optional<UserEntry> senderOpt = directory.findByEmail(mail.getSender());
         if (senderOpt.isEmpty()) throw new NoSuchElementException("sender not found");
-        User sender = senderOpt.get();
+        UserEntry sender = senderOpt.get();
 
-        String fullName = String.join(" ",
-                sender.getFirstName(),
-                sender.getLastName()
-        ).toLowerCase();
-
-        String email = sender.getEmail().toLowerCase();
-        String emailLocalPart = email.split("@")[0];
+        String fullName = sender.fullNameLower();
+        String email = sender.emailLower();
+        String emailLocalPart = sender.emailLocalPart();
 
         // Check each query against the sender
         for (String senderName : senderNames) {
@@ -54,7 +51,7 @@ public class SenderFilter implements FilterStrategy {
             }
 
             // Token-based prefix matching
-            String[] senderTokens = (fullName + " " + emailLocalPart).split("[\\s@._+-]+");
+            String[] senderTokens = sender.tokens();
             String[] queryTokens = query.split("\\s+");
 
             boolean allTokensMatched = true;
@@ -83,9 +80,9 @@ public class SenderFilter implements FilterStrategy {
     @Override
     public int getScore(Mail mail) {
         int maxScore = 0;
-        Optional<User> senderOpt = repo.findByEmail(mail.getSender()) ;
+        Optional<UserEntry> senderOpt = directory.findByEmail(mail.getSender()) ;
         if (senderOpt.isEmpty()) throw new NoSuchElementException("sender not found");
-        User sender = senderOpt.get();
+        UserEntry sender = senderOpt.get();
         for (String queryName : senderNames) {
             String query = queryName.trim().toLowerCase();
                 int score = calculateMatchScore(sender, query);
@@ -95,10 +92,10 @@ public class SenderFilter implements FilterStrategy {
         return maxScore;
     }
 
-    private int calculateMatchScore(User user, String query) {
-        String fullName = (user.getFirstName() + " " + user.getLastName()).toLowerCase();
-        String email = user.getEmail().toLowerCase();
-        String emailLocalPart = email.split("@")[0];
+    private int calculateMatchScore(UserEntry user, String query) {
+        String fullName = user.fullNameLower();
+        String email = user.emailLower();
+        String emailLocalPart = user.emailLocalPart();
 
         if (email.equals(query)) return 100;
         if (fullName.equals(query)) return 90;
@@ -108,7 +105,7 @@ public class SenderFilter implements FilterStrategy {
         if (email.contains(query)) return 50;
         if (fullName.contains(query)) return 40;
 
-        String[] userTokens = (fullName + " " + emailLocalPart).split("[\\s@._+-]+");
+        String[] userTokens = user.tokens();
         String[] queryTokens = query.split("\\s+");
         int matchedTokens = 0;
 
@@ -2,6 +2,7 @@ package eg.edu.alexu.cse.mail_server.Service.chain;
 
 import eg.edu.alexu.cse.mail_server.Entity.User;
 import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
 import eg.edu.alexu.cse.mail_server.dto.UserFormDto;
 import eg.edu.alexu.cse.mail_server.dto.UserResponseDto;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class SaveUserHandler extends UserHandler {
     private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
 
     @Override
     public UserResponseDto handle(UserFormDto request) {
@@ -22,6 +24,7 @@ public class SaveUserHandler extends UserHandler {
                 .build();
 
         User savedUser = userRepository.save(user);
+        userDirectory.invalidate(savedUser.getEmail());
 
         System.out.println("Step 3: User Saved to Database.");
 
@@ -1,6 +1,6 @@
 package eg.edu.alexu.cse.mail_server.Service.chain;
 
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
 import eg.edu.alexu.cse.mail_server.dto.UserFormDto;
 import eg.edu.alexu.cse.mail_server.dto.UserResponseDto;
 import lombok.RequiredArgsConstructor;
@@ -10,10 +10,10 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class UserExistenceHandler extends UserHandler{
 
-    private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
     @Override
     public UserResponseDto handle(UserFormDto request) {
-        if (userRepository.findByEmail(request.getEmail()).isPresent()) {
+        if (userDirectory.findByEmail(request.getEmail()).isPresent()) {
             throw new RuntimeException("Email already exists!");
         }
         System.out.println("Step 2: User does not exist. Proceeding.");
@@ -1,25 +1,61 @@
 package eg.edu.alexu.cse.mail_server.Service.command;
 
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MessageBody;
 import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MessageBodyRepository;
 import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.MailSyncService;
+import eg.edu.alexu.cse.mail_server.Service.MailboxCounterService;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
 import eg.edu.alexu.cse.mail_server.dto.ComposeEmailDTO;
+import eg.edu.alexu.cse.mail_server.dto.DraftPatchDto;
+import eg.edu.alexu.cse.mail_server.dto.DraftSavedDto;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class DraftCommand implements MailCommand {
     private final UserRepository userRepository;
     private final MailRepository mailRepository;
+    private final MessageBodyRepository messageBodyRepository;
+    private final MailboxCounterService mailboxCounterService;
+    private final MailSyncService mailSyncService;
+    private final MailSearchIndex mailSearchIndex;
 
 
     @Override
     @Transactional
     public void execute(ComposeEmailDTO dto) {
+        save(dto);
+    }
+
+    /**
+     * Save a draft
+     * Without a draftId a new DRAFTS mail is created; with one, that draft is
+     * overwritten in place (the same version check as {@link #patch} applies)
+     * @param dto draft content, optionally with draftId and draftVersion
+     * @return the draft's ID and version after the save
+     */
+    @Transactional
+    public DraftSavedDto save(ComposeEmailDTO dto) {
+        if (dto.getDraftId() != null) {
+            return patch(dto.getDraftId(), DraftPatchDto.builder()
+                    .sender(dto.getSender())
+                    .version(dto.getDraftVersion())
+                    .receivers(dto.getReceivers())
+                    .subject(dto.getSubject())
+                    .body(dto.getBody())
+                    .priority(dto.getPriority())
+                    .build());
+        }
+
         var senderUser = userRepository.findByEmail(dto.getSender())
                 .orElseThrow(() -> new RuntimeException("Sender email not found: " + dto.getSender()));
 
@@ -28,13 +64,82 @@ public class DraftCommand implements MailCommand {
                 .senderRel(senderUser)
                 .receiver(String.join(", ", dto.getReceivers()))
                 .subject(dto.getSubject())
-                .body(dto.getBody())
+                .messageBody(MessageBody.of(dto.getBody()))
                 .timestamp(LocalDateTime.now())
                 .folderName("DRAFTS")
                 .isRead(true)
                 .owner(senderUser)  // Set owner for draft
                 .build();
 
+        mailSyncService.touch(draft);
+        mailRepository.save(draft);
+        mailboxCounterService.mailAdded(draft);
+        mailSearchIndex.index(draft);
+        return new DraftSavedDto(draft.getMailId(), draft.getDraftVersion());
+    }
+
+    /**
+     * Update an existing draft with only the fields that changed
+     * The version check and bump is a single conditional UPDATE, so of two
+     * concurrent autosaves based on the same version only the first applies.
+     * The body row is replaced only when the body itself changed
+     * @param draftId the draft to update
+     * @param changes changed fields plus the version the client last saw
+     * @return the draft's ID and new version
+     * @throws OptimisticLockingFailureException if the draft was saved since that version
+     */
+    @Transactional
+    public DraftSavedDto patch(Long draftId, DraftPatchDto changes) {
+        if (changes.getVersion() == null) {
+            throw new IllegalArgumentException("version is required to update a draft");
+        }
+        if (changes.getSender() == null) {
+            throw new IllegalArgumentException("sender is required to update a draft");
+        }
+        if (mailRepository.bumpDraftVersion(draftId, changes.getVersion()) == 0) {
+            if (!mailRepository.existsByMailIdAndFolderName(draftId, "DRAFTS")) {
+                throw new IllegalArgumentException("Draft not found: " + draftId);
+            }
+            throw new OptimisticLockingFailureException("Draft " + draftId + " has a newer version than "
+                    + changes.getVersion() + ", this save is stale");
+        }
+
+        // Loaded after the bump, so it carries the new version
+        Mail draft = mailRepository.findById(draftId)
+                .orElseThrow(() -> new IllegalArgumentException("Draft not found: " + draftId));
+        if (!draft.getSender().equalsIgnoreCase(changes.getSender())) {
+            throw new IllegalArgumentException("Draft " + draftId + " does not belong to " + changes.getSender());
+        }
+
+        if (changes.getReceivers() != null) {
+            draft.setReceiver(String.join(", ", changes.getReceivers()));
+        }
+        boolean textChanged = false;
+        if (changes.getSubject() != null && !changes.getSubject().equals(draft.getSubject())) {
+            draft.setSubject(changes.getSubject());
+            textChanged = true;
+        }
+        if (changes.getPriority() != null) {
+            draft.setPriority(changes.getPriority());
+        }
+        MessageBody replacedBody = null;
+        if (changes.getBody() != null && !changes.getBody().equals(draft.getBody())) {
+            replacedBody = draft.getMessageBody();
+            draft.setBody(changes.getBody());
+            textChanged = true;
+        }
+        draft.setTimestamp(LocalDateTime.now());
+
+        mailSyncService.touch(draft);
         mailRepository.save(draft);
+        if (textChanged) {
+            mailSearchIndex.reindex(draft);
+        }
+        if (replacedBody != null && replacedBody.getId() != null) {
+            // Unless the draft was copied to a folder, nothing else uses the old text
+            mailRepository.flush();
+            messageBodyRepository.deleteUnreferenced(List.of(replacedBody.getId()));
+        }
+        return new DraftSavedDto(draftId, draft.getDraftVersion());
     }
 }
@@ -22,26 +22,29 @@ public class GetMailCommand {
      * Execute the command to get mail with attachments.
      *
      * @param mailId the ID of the mail to retrieve
-     * @return EmailViewDto containing mail data and attachments with Base64-encoded file data
+     * @param inline whether small attachments should embed their Base64 content
+     * @return EmailViewDto containing mail data and attachment descriptors
      * @throws RuntimeException if mail is not found
      * @throws IOException if file reading fails
      */
-    public EmailViewDto execute(Long mailId) throws IOException {
+    public EmailViewDto execute(Long mailId, boolean inline) throws IOException {
 
         Mail mail = mailRepository.findById(mailId)
                 .orElseThrow(() -> new RuntimeException("Mail not found with id: " + mailId));
 
 
-        List<AttachmentDTO> attachments = attachmentService.getAttachmentsWithData(mailId);
+        List<AttachmentDTO> attachments = attachmentService.getAttachmentDescriptors(mailId, inline);
 
         return EmailViewDto.builder()
                 .id(mail.getMailId())
                 .sender(mail.getSender())
+                .receiver(mail.getReceiver())
                 .subject(mail.getSubject())
                 .body(mail.getBody())
                 .timestamp(mail.getTimestamp())
                 .priority(mail.getPriority())
                 .isRead(mail.isRead())
+                .folderName(mail.getFolderName())
                 .attachments(attachments)
                 .build();
     }
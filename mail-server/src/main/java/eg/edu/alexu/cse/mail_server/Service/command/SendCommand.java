@@ -3,19 +3,26 @@ package eg.edu.alexu.cse.mail_server.Service.command;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import eg.edu.alexu.cse.mail_server.Entity.Attachment;
 import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MessageBody;
+import eg.edu.alexu.cse.mail_server.Entity.UploadSession;
 import eg.edu.alexu.cse.mail_server.Entity.User;
 import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
-import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.MailSyncService;
+import eg.edu.alexu.cse.mail_server.Service.MailboxCounterService;
 import eg.edu.alexu.cse.mail_server.Service.AttachmentService;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserEntry;
+import eg.edu.alexu.cse.mail_server.Service.outbox.OutboxService;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
+import eg.edu.alexu.cse.mail_server.Service.upload.UploadService;
 import eg.edu.alexu.cse.mail_server.dto.ComposeEmailDTO;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -23,81 +30,59 @@ import lombok.RequiredArgsConstructor;
 @Component
 @RequiredArgsConstructor
 public class SendCommand implements MailCommand {
-    private final UserRepository userRepository;
+    private final UserDirectory userDirectory;
     private final MailRepository mailRepository;
+    private final MailboxCounterService mailboxCounterService;
+    private final MailSyncService mailSyncService;
     private final AttachmentService attachmentService;
+    private final OutboxService outboxService;
+    private final UploadService uploadService;
+    private final MailSearchIndex mailSearchIndex;
 
     @Override
-    @Transactional   // if error in receiver copy consider not sent copy (all or nothing)
+    @Transactional   // SENT copy and outbox entry are written together (all or nothing)
     public void execute(ComposeEmailDTO dto) {
-        User senderUser = userRepository.findByEmail(dto.getSender())
-                .orElseThrow(() -> new RuntimeException("Sender email not found: " + dto.getSender()));
+        User senderUser = resolveSender(dto.getSender());
+        Map<String, User> receivers = resolveReceivers(dto.getReceivers());
 
-        Mail sentCopy = Mail.builder()
-                .sender(dto.getSender())
-                .senderRel(senderUser)
-                .receiver(String.join(",", dto.getReceivers()))
-                .body(dto.getBody())
-                .subject(dto.getSubject())
-                .priority(dto.getPriority())
-                .attachments(null) // still need to handle
-                .folderName("SENT")
-                .isRead(true)
-                .timestamp(LocalDateTime.now())
-                .owner(senderUser)  // Set owner for sent copy
-                .build();
-
-        mailRepository.save(sentCopy);
-
-        Queue<String> receiverQueue = new LinkedList<>(dto.getReceivers());
-        List<String> failedReceivers = new ArrayList<>();
-
-        while (!receiverQueue.isEmpty()) {
-            String receiverEmail = receiverQueue.poll();
-
-            if (userRepository.findByEmail(receiverEmail).isPresent()) {
-                User receiverUser = userRepository.findByEmail(receiverEmail).get();
-                Mail inboxCopy = Mail.builder()
-                        .sender(dto.getSender())
-                        .senderRel(senderUser)
-                        .receiver(receiverEmail)
-                        .subject(dto.getSubject())
-                        .body(dto.getBody())
-                        .priority(dto.getPriority())
-                        .timestamp(LocalDateTime.now())
-                        .folderName("INBOX")
-                        .isRead(false)
-                        .owner(receiverUser)  // Set owner as receiver for inbox copy
-                        .build();
-
-                mailRepository.save(inboxCopy);
-            } else {
-                failedReceivers.add(receiverEmail);
-            }
-        }
-        if (!failedReceivers.isEmpty()) {
-            throw new RuntimeException("the following receivers were not found: " + String.join(",", failedReceivers));
-        }
+        Mail sentCopy = saveSentCopy(dto, senderUser);
+        attachUploads(dto, sentCopy);
+        outboxService.enqueue(sentCopy, dto.getReceivers(), receivers);
     }
 
     /**
      * Execute send command with attachments
-     * Creates sent copy with attachments and inbox copies for all receivers
+     * Stores the sent copy with its attachments and queues delivery to all receivers;
+     * inbox copies are created by the outbox workers after this returns
      * @param dto email details
      * @param attachments list of files to attach
+     * @return outbox ID for checking delivery status
      * @throws IOException if file processing fails
      */
     @Transactional
-    public void executeWithAttachments(ComposeEmailDTO dto, List<MultipartFile> attachments) throws IOException {
-        User senderUser = userRepository.findByEmail(dto.getSender())
-                .orElseThrow(() -> new RuntimeException("Sender email not found: " + dto.getSender()));
+    public Long executeWithAttachments(ComposeEmailDTO dto, List<MultipartFile> attachments) throws IOException {
+        User senderUser = resolveSender(dto.getSender());
+        Map<String, User> receivers = resolveReceivers(dto.getReceivers());
 
-        // Create sent copy
+        Mail sentCopy = saveSentCopy(dto, senderUser);
+
+        // Inbox copies reference these same stored files when they are delivered
+        if (attachments != null && !attachments.isEmpty()) {
+            for (MultipartFile file : attachments) {
+                attachmentService.saveAttachment(file, sentCopy);
+            }
+        }
+        attachUploads(dto, sentCopy);
+
+        return outboxService.enqueue(sentCopy, dto.getReceivers(), receivers);
+    }
+
+    private Mail saveSentCopy(ComposeEmailDTO dto, User senderUser) {
         Mail sentCopy = Mail.builder()
                 .sender(dto.getSender())
                 .senderRel(senderUser)
                 .receiver(String.join(",", dto.getReceivers()))
-                .body(dto.getBody())
+                .messageBody(MessageBody.of(dto.getBody())) // shared with every inbox copy
                 .subject(dto.getSubject())
                 .priority(dto.getPriority())
                 .folderName("SENT")
@@ -106,52 +91,49 @@ public class SendCommand implements MailCommand {
                 .owner(senderUser)  // Set owner for sent copy
                 .build();
 
+        mailSyncService.touch(sentCopy);
         mailRepository.save(sentCopy);
+        mailboxCounterService.mailAdded(sentCopy);
+        mailSearchIndex.index(sentCopy);
+        return sentCopy;
+    }
 
-        // Save attachments for sent copy
-        if (attachments != null && !attachments.isEmpty()) {
-            for (MultipartFile file : attachments) {
-                attachmentService.saveAttachment(file, sentCopy);
-            }
+    // Files already sent through the resumable upload API are attached without re-reading them
+    private void attachUploads(ComposeEmailDTO dto, Mail sentCopy) {
+        for (UploadSession upload : uploadService.takeCompleted(dto.getUploadIds(), dto.getSender())) {
+            attachmentService.attachUpload(upload, sentCopy);
         }
+    }
 
-        // Send to all receivers
-        Queue<String> receiverQueue = new LinkedList<>(dto.getReceivers());
-        List<String> failedReceivers = new ArrayList<>();
+    // Users come from the directory; the mail only needs a reference to link to
+    private User resolveSender(String senderEmail) {
+        UserEntry sender = userDirectory.findByEmail(senderEmail)
+                .orElseThrow(() -> new RuntimeException("Sender email not found: " + senderEmail));
+        return userDirectory.getReference(sender);
+    }
 
-        while (!receiverQueue.isEmpty()) {
-            String receiverEmail = receiverQueue.poll();
-
-            if (userRepository.findByEmail(receiverEmail).isPresent()) {
-                User receiverUser = userRepository.findByEmail(receiverEmail).get();
-                Mail inboxCopy = Mail.builder()
-                        .sender(dto.getSender())
-                        .senderRel(senderUser)
-                        .receiver(receiverEmail)
-                        .subject(dto.getSubject())
-                        .body(dto.getBody())
-                        .priority(dto.getPriority())
-                        .timestamp(LocalDateTime.now())
-                        .folderName("INBOX")
-                        .isRead(false)
-                        .owner(receiverUser)  // Set owner as receiver for inbox copy
-                        .build();
-
-                mailRepository.save(inboxCopy);
-
-                // Copy attachments for each receiver's inbox copy
-                if (attachments != null && !attachments.isEmpty()) {
-                    for (MultipartFile file : attachments) {
-                        attachmentService.saveAttachment(file, inboxCopy);
-                    }
-                }
-            } else {
+    /**
+     * Resolve every receiver before anything is written, so an unknown
+     * address fails the send without creating any copy
+     * Known receivers come from the directory; the rest are loaded with a single query
+     * @param receiverEmails receivers as given in the request
+     * @return receivers keyed by lower-cased email
+     * @throws RuntimeException listing every receiver that does not exist
+     */
+    private Map<String, User> resolveReceivers(List<String> receiverEmails) {
+        Map<String, User> receivers = new HashMap<>();
+        userDirectory.findByEmails(receiverEmails)
+                .forEach((email, entry) -> receivers.put(email, userDirectory.getReference(entry)));
+
+        List<String> failedReceivers = new ArrayList<>();
+        for (String receiverEmail : receiverEmails) {
+            if (!receivers.containsKey(receiverEmail.trim().toLowerCase())) {
                 failedReceivers.add(receiverEmail);
             }
         }
-
         if (!failedReceivers.isEmpty()) {
             throw new RuntimeException("the following receivers were not found: " + String.join(",", failedReceivers));
         }
+        return receivers;
     }
-}
\ No newline at end of file
+}
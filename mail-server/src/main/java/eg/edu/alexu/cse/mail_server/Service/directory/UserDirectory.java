@@ -0,0 +1,143 @@
+package eg.edu.alexu.cse.mail_server.Service.directory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bounded in-memory directory of users, keyed by email and by id
+ *
+ * Searches resolve the sender and every receiver of each evaluated mail,
+ * and most endpoints resolve the caller's email to an id; both are served
+ * from here instead of a query per lookup. Entries are loaded on first use
+ * and the least recently used ones are evicted once mail.users.cache-size
+ * is reached. Saving a user must call {@link #invalidate(String)}.
+ * Misses are not cached, so a newly registered address is found at once
+ */
+@Component
+@RequiredArgsConstructor
+public class UserDirectory {
+
+    private final UserRepository userRepository;
+
+    @Value("${mail.users.cache-size:10000}")
+    private int maxEntries;
+
+    // Both maps are guarded by "this"; the id map follows evictions of the email map
+    private final Map<Long, UserEntry> byId = new HashMap<>();
+    private final Map<String, UserEntry> byEmail = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UserEntry> eldest) {
+            if (size() <= maxEntries) {
+                return false;
+            }
+            byId.remove(eldest.getValue().userId());
+            return true;
+        }
+    };
+
+    /**
+     * @param email address in any case, surrounding spaces ignored
+     * @return the user, or empty if no account has this address
+     */
+    public Optional<UserEntry> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String key = normalize(email);
+        synchronized (this) {
+            UserEntry cached = byEmail.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        return userRepository.findByEmail(email.trim()).map(this::remember);
+    }
+
+    public Optional<UserEntry> findById(Long userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            UserEntry cached = byId.get(userId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        return userRepository.findById(userId).map(this::remember);
+    }
+
+    /**
+     * Resolve many addresses, loading all misses with a single query
+     * @return the users found, keyed by lower-cased email; unknown addresses are absent
+     */
+    public Map<String, UserEntry> findByEmails(Collection<String> emails) {
+        Map<String, UserEntry> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String email : emails) {
+                UserEntry cached = byEmail.get(normalize(email));
+                if (cached != null) {
+                    found.put(cached.emailLower(), cached);
+                } else {
+                    missing.add(email.trim());
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User user : userRepository.findByEmailIn(missing)) {
+                UserEntry entry = remember(user);
+                found.put(entry.emailLower(), entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The user's id, for the many endpoints addressed by email
+     * @throws RuntimeException if no account has this address
+     */
+    public Long getUserId(String email) {
+        return findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .userId();
+    }
+
+    /**
+     * A lazy reference for use as a relation (sender, owner, contact user)
+     * without loading the row
+     */
+    public User getReference(UserEntry entry) {
+        return userRepository.getReferenceById(entry.userId());
+    }
+
+    // Drop a user after it was saved, so the next lookup reloads it
+    public synchronized void invalidate(String email) {
+        UserEntry removed = byEmail.remove(normalize(email));
+        if (removed != null) {
+            byId.remove(removed.userId());
+        }
+    }
+
+    private synchronized UserEntry remember(User user) {
+        UserEntry entry = UserEntry.of(user);
+        byEmail.put(entry.emailLower(), entry);
+        byId.put(entry.userId(), entry);
+        return entry;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+}
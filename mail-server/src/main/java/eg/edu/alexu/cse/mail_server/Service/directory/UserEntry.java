@@ -0,0 +1,38 @@
+package eg.edu.alexu.cse.mail_server.Service.directory;
+
+import eg.edu.alexu.cse.mail_server.Entity.User;
+
+/**
+ * Read-only view of a user held by {@link UserDirectory}
+ * The lower-cased name and email forms used by the sender/receiver
+ * filters are computed once here instead of for every evaluated mail.
+ * The password is deliberately not part of the entry
+ */
+public record UserEntry(Long userId,
+                        String email,
+                        String firstName,
+                        String lastName,
+                        String emailLower,
+                        String emailLocalPart,
+                        String fullNameLower,
+                        String[] tokens) {
+
+    public static UserEntry of(User user) {
+        String emailLower = user.getEmail().toLowerCase();
+        String emailLocalPart = emailLower.split("@")[0];
+        String fullNameLower = String.join(" ", user.getFirstName(), user.getLastName()).toLowerCase();
+        return new UserEntry(
+                user.getUserId(),
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                emailLower,
+                emailLocalPart,
+                fullNameLower,
+                (fullNameLower + " " + emailLocalPart).split("[\\s@._+-]+"));
+    }
+
+    public String displayName() {
+        return firstName + " " + lastName;
+    }
+}
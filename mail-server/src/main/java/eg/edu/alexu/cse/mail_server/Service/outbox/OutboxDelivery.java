@@ -0,0 +1,204 @@
+package eg.edu.alexu.cse.mail_server.Service.outbox;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.DeliveryStatus;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxMessage;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxRecipient;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.OutboxMessageRepository;
+import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.AttachmentService;
+import eg.edu.alexu.cse.mail_server.Service.MailFanOutWriter;
+import eg.edu.alexu.cse.mail_server.Service.push.MailDeliveredEvent;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Transactional steps of delivering one outbox entry
+ * Each method runs in its own transaction, called by OutboxDispatcher workers
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxDelivery {
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final OutboxMessageRepository outboxRepository;
+    private final UserRepository userRepository;
+    private final MailFanOutWriter mailFanOutWriter;
+    private final AttachmentService attachmentService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    // A claim older than this belongs to a worker that died mid-delivery
+    @Value("${mail.outbox.claim-timeout-ms:300000}")
+    private long claimTimeoutMs;
+
+    /**
+     * IDs of entries ready for a worker, oldest first
+     */
+    public List<Long> findDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxRepository.findDueIds(DeliveryStatus.PENDING, DeliveryStatus.DELIVERING,
+                now, now.minus(Duration.ofMillis(claimTimeoutMs)), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Take an entry for delivery
+     * The returned claim time identifies this claim; pass it to deliver and
+     * recordFailure so a worker whose claim was taken over writes nothing
+     *
+     * @return the claim time, or null if it is not due or another worker already holds it
+     */
+    @Transactional
+    public LocalDateTime claim(Long outboxId) {
+        // Whole seconds, so the value reads back equal whatever the column precision
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        int claimed = outboxRepository.claim(outboxId, DeliveryStatus.PENDING, DeliveryStatus.DELIVERING,
+                now, now.minus(Duration.ofMillis(claimTimeoutMs)));
+        return claimed > 0 ? now : null;
+    }
+
+    /**
+     * Create the INBOX copy of every pending recipient
+     * Copies share the SENT copy's body and attachment files. A recipient whose
+     * account was removed after sending fails on its own; any other error rolls
+     * the whole attempt back for a retry
+     *
+     * @param claimedAt value returned by claim
+     * @return false, without writing anything, if the claim was taken over by another worker
+     */
+    @Transactional
+    public boolean deliver(Long outboxId, LocalDateTime claimedAt) {
+        if (outboxRepository.holdClaim(outboxId, DeliveryStatus.DELIVERING, claimedAt) == 0) {
+            return false;
+        }
+        OutboxMessage outbox = outboxRepository.findById(outboxId)
+                .orElseThrow(() -> new IllegalStateException("Outbox entry not found: " + outboxId));
+        Mail sentCopy = outbox.getSentMail();
+
+        List<OutboxRecipient> pending = outbox.getRecipients().stream()
+                .filter(recipient -> recipient.getStatus() == DeliveryStatus.PENDING)
+                .toList();
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(pending.stream().map(OutboxRecipient::getReceiverId).toList())) {
+            users.put(user.getUserId(), user);
+        }
+
+        List<OutboxRecipient> deliveredTo = new ArrayList<>();
+        List<Mail> inboxCopies = new ArrayList<>();
+        for (OutboxRecipient recipient : pending) {
+            User receiverUser = users.get(recipient.getReceiverId());
+            if (receiverUser == null) {
+                recipient.setStatus(DeliveryStatus.FAILED);
+                recipient.setLastError("Receiver account no longer exists");
+                continue;
+            }
+            deliveredTo.add(recipient);
+            inboxCopies.add(Mail.builder()
+                    .sender(sentCopy.getSender())
+                    .senderRel(sentCopy.getSenderRel())
+                    .receiver(recipient.getReceiverEmail())
+                    .subject(sentCopy.getSubject())
+                    .messageBody(sentCopy.getMessageBody())
+                    .priority(sentCopy.getPriority())
+                    .timestamp(sentCopy.getTimestamp())
+                    .folderName("INBOX")
+                    .isRead(false)
+                    .owner(receiverUser)  // Set owner as receiver for inbox copy
+                    .build());
+        }
+
+        mailFanOutWriter.writeAll(inboxCopies);
+        if (!inboxCopies.isEmpty() && sentCopy.getAttachments() != null && !sentCopy.getAttachments().isEmpty()) {
+            try {
+                attachmentService.copyAttachments(sentCopy.getAttachments(), inboxCopies);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to attach files for outbox entry " + outboxId, e);
+            }
+        }
+
+        for (int i = 0; i < inboxCopies.size(); i++) {
+            Mail inboxCopy = inboxCopies.get(i);
+            OutboxRecipient recipient = deliveredTo.get(i);
+            recipient.setStatus(DeliveryStatus.DELIVERED);
+            recipient.setDeliveredMailId(inboxCopy.getMailId());
+            recipient.setLastError(null);
+            publishDelivery(inboxCopy);
+        }
+
+        outbox.setAttempts(outbox.getAttempts() + 1);
+        outbox.setStatus(DeliveryStatus.DELIVERED);
+        outbox.setCompletedAt(LocalDateTime.now());
+        outbox.setLastError(null);
+        return true;
+    }
+
+    /**
+     * Record a failed attempt: schedule a retry with exponential backoff,
+     * or give up on the remaining recipients after mail.outbox.max-attempts
+     */
+    @Transactional
+    public void recordFailure(Long outboxId, LocalDateTime claimedAt, Exception error) {
+        // The worker that took over the claim records its own outcome
+        if (outboxRepository.holdClaim(outboxId, DeliveryStatus.DELIVERING, claimedAt) == 0) {
+            return;
+        }
+        OutboxMessage outbox = outboxRepository.findById(outboxId).orElse(null);
+        if (outbox == null) {
+            return;
+        }
+
+        String message = truncate(String.valueOf(error.getMessage()));
+        int attempts = outbox.getAttempts() + 1;
+        outbox.setAttempts(attempts);
+        outbox.setLastError(message);
+
+        if (attempts >= maxAttempts) {
+            outbox.setStatus(DeliveryStatus.FAILED);
+            outbox.setCompletedAt(LocalDateTime.now());
+            for (OutboxRecipient recipient : outbox.getRecipients()) {
+                if (recipient.getStatus() == DeliveryStatus.PENDING) {
+                    recipient.setStatus(DeliveryStatus.FAILED);
+                    recipient.setLastError(message);
+                }
+            }
+        } else {
+            // 2s, 4s, 8s ... capped at five minutes
+            long delaySeconds = Math.min(1L << attempts, MAX_BACKOFF_SECONDS);
+            outbox.setStatus(DeliveryStatus.PENDING);
+            outbox.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+        }
+    }
+
+    // Delivered to open event streams by MailEventHub after this transaction commits
+    private void publishDelivery(Mail inboxCopy) {
+        eventPublisher.publishEvent(new MailDeliveredEvent(
+                inboxCopy.getReceiver(),
+                inboxCopy.getMailId(),
+                inboxCopy.getSender(),
+                inboxCopy.getSubject(),
+                inboxCopy.getTimestamp(),
+                inboxCopy.getModSeq()));
+    }
+
+    private String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
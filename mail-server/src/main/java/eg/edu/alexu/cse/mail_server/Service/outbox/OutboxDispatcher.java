@@ -0,0 +1,104 @@
+package eg.edu.alexu.cse.mail_server.Service.outbox;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Worker pool that delivers outbox entries in the background
+ *
+ * New sends are dispatched right after they commit; a poll picks up retries,
+ * entries left over from a restart and claims of workers that died.
+ * Workers are virtual threads, and at most mail.outbox.workers entries are
+ * delivered at once; anything beyond that waits in the table for a later poll
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxDispatcher {
+    private final OutboxDelivery outboxDelivery;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${mail.outbox.workers:16}")
+    private int workerCount;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(workerCount);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEnqueued(OutboxEnqueuedEvent event) {
+        dispatch(event.outboxId());
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-ms:1000}")
+    public void pollDue() {
+        int free = permits.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        for (Long outboxId : outboxDelivery.findDue(free)) {
+            dispatch(outboxId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished entries stay claimed and are retried once the claim times out
+        workers.shutdown();
+    }
+
+    private void dispatch(Long outboxId) {
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    run(outboxId);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down - the entry stays pending for the next start
+            permits.release();
+        }
+    }
+
+    private void run(Long outboxId) {
+        LocalDateTime claimedAt;
+        try {
+            claimedAt = outboxDelivery.claim(outboxId);
+        } catch (RuntimeException e) {
+            // e.g. a lock wait while a slow attempt still holds the entry; the poll tries again
+            System.err.println("Could not claim outbox entry " + outboxId + ": " + e.getMessage());
+            return;
+        }
+        if (claimedAt == null) {
+            return;
+        }
+        try {
+            if (!outboxDelivery.deliver(outboxId, claimedAt)) {
+                System.err.println("Outbox entry " + outboxId + " was taken over by another worker");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Delivery of outbox entry " + outboxId + " failed: " + e.getMessage());
+            outboxDelivery.recordFailure(outboxId, claimedAt, e);
+        }
+    }
+}
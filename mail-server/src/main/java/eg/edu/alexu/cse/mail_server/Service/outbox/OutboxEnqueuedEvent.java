@@ -0,0 +1,8 @@
+package eg.edu.alexu.cse.mail_server.Service.outbox;
+
+/**
+ * Published when a send stores its outbox entry
+ * Handled after commit so a worker starts delivering without waiting for the next poll
+ */
+public record OutboxEnqueuedEvent(Long outboxId) {
+}
@@ -0,0 +1,136 @@
+package eg.edu.alexu.cse.mail_server.Service.outbox;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.DeliveryStatus;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxMessage;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxRecipient;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.OutboxMessageRepository;
+import eg.edu.alexu.cse.mail_server.dto.OutboxStatusDto;
+import eg.edu.alexu.cse.mail_server.dto.RecipientStatusDto;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Entry point of the outbox: queues sent mails and reports their delivery progress
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    private final OutboxMessageRepository outboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final int CLEANUP_BATCH_SIZE = 500;
+
+    // Finished entries (and their delivery status) are kept this long
+    @Value("${mail.outbox.retention-days:30}")
+    private long retentionDays;
+
+    /**
+     * Queue delivery of a stored SENT copy, in the caller's transaction
+     *
+     * @param sentCopy the sender's saved SENT copy
+     * @param receiverEmails receivers as given in the request
+     * @param receivers resolved receivers keyed by lower-cased email
+     * @return outbox ID for checking delivery status
+     */
+    @Transactional
+    public Long enqueue(Mail sentCopy, List<String> receiverEmails, Map<String, User> receivers) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxMessage outbox = OutboxMessage.builder()
+                .sentMail(sentCopy)
+                .status(DeliveryStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+
+        for (String receiverEmail : receiverEmails) {
+            outbox.getRecipients().add(OutboxRecipient.builder()
+                    .outbox(outbox)
+                    .receiverEmail(receiverEmail)
+                    .receiverId(receivers.get(receiverEmail.trim().toLowerCase()).getUserId())
+                    .status(DeliveryStatus.PENDING)
+                    .build());
+        }
+
+        outboxRepository.save(outbox);
+        eventPublisher.publishEvent(new OutboxEnqueuedEvent(outbox.getId()));
+        return outbox.getId();
+    }
+
+    /**
+     * Delivery progress of a queued mail, per recipient
+     *
+     * @param outboxId ID returned when the mail was sent
+     * @return status of the entry and each recipient
+     * @throws IllegalArgumentException if the entry does not exist
+     */
+    @Transactional
+    public OutboxStatusDto getStatus(Long outboxId) {
+        OutboxMessage outbox = outboxRepository.findById(outboxId)
+                .orElseThrow(() -> new IllegalArgumentException("Outbox entry not found: " + outboxId));
+
+        List<RecipientStatusDto> recipients = outbox.getRecipients().stream()
+                .map(recipient -> RecipientStatusDto.builder()
+                        .receiver(recipient.getReceiverEmail())
+                        .status(recipient.getStatus().name())
+                        .mailId(recipient.getDeliveredMailId())
+                        .error(recipient.getLastError())
+                        .build())
+                .toList();
+
+        return OutboxStatusDto.builder()
+                .outboxId(outbox.getId())
+                .mailId(outbox.getSentMail().getMailId())
+                .status(outbox.getStatus().name())
+                .attempts(outbox.getAttempts())
+                .createdAt(outbox.getCreatedAt())
+                .completedAt(outbox.getCompletedAt())
+                .recipients(recipients)
+                .build();
+    }
+
+    /**
+     * Drop the outbox entries of sent copies that are being deleted for good
+     * The entries reference their SENT copy, so this runs before the mails are deleted
+     *
+     * @param mailIds IDs of the mails being purged
+     */
+    @Transactional
+    public void discardForSentMails(Collection<Long> mailIds) {
+        if (mailIds.isEmpty()) {
+            return;
+        }
+        List<Long> outboxIds = outboxRepository.findIdsBySentMailIds(mailIds);
+        if (!outboxIds.isEmpty()) {
+            outboxRepository.deleteRecipientsByOutboxIds(outboxIds);
+            outboxRepository.deleteByIds(outboxIds);
+        }
+    }
+
+    /**
+     * Remove delivered and failed entries older than mail.outbox.retention-days
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.cleanup-ms:3600000}")
+    @Transactional
+    public void removeFinishedEntries() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        List<Long> outboxIds = outboxRepository.findFinishedIds(
+                List.of(DeliveryStatus.DELIVERED, DeliveryStatus.FAILED), before, PageRequest.of(0, CLEANUP_BATCH_SIZE));
+        if (!outboxIds.isEmpty()) {
+            outboxRepository.deleteRecipientsByOutboxIds(outboxIds);
+            outboxRepository.deleteByIds(outboxIds);
+        }
+    }
+}
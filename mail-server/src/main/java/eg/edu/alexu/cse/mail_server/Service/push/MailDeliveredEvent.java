@@ -0,0 +1,17 @@
+package eg.edu.alexu.cse.mail_server.Service.push;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by SendCommand for every inbox copy it writes
+ * Pushed to the receiver's open event streams once the send transaction commits;
+ * modSeq lets the client catch up through /api/mail/changes
+ */
+public record MailDeliveredEvent(
+        String receiverEmail,
+        Long mailId,
+        String sender,
+        String subject,
+        LocalDateTime timestamp,
+        long modSeq) {
+}
@@ -0,0 +1,125 @@
+package eg.edu.alexu.cse.mail_server.Service.push;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process fan-out of mail delivery events to Server-Sent Event streams
+ *
+ * Open streams are async servlet responses, so an idle subscriber holds no
+ * thread - only an SseEmitter in the map. Writes happen on virtual threads,
+ * so one slow client never delays the sender or other subscribers.
+ * The number of open streams is capped by mail.push.max-connections
+ */
+@Component
+public class MailEventHub {
+    private static final String DELIVERY_EVENT = "mail-delivered";
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${mail.push.max-connections:10000}")
+    private int maxConnections;
+
+    @Value("${mail.push.timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${mail.push.retry-after-seconds:30}")
+    private long retryAfterSeconds;
+
+    /**
+     * Open an event stream for a user
+     *
+     * @param userEmail the user whose deliveries should be pushed
+     * @return the emitter backing the response
+     * @throws TooManyStreamsException if the connection cap is reached
+     */
+    public SseEmitter subscribe(String userEmail) {
+        if (openStreams.incrementAndGet() > maxConnections) {
+            openStreams.decrementAndGet();
+            throw new TooManyStreamsException(retryAfterSeconds);
+        }
+
+        String key = userEmail.toLowerCase();
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        // add and remove both run inside compute, so a set emptied and dropped by remove
+        // can never receive a new emitter after it left the map
+        subscribers.compute(key, (k, emitters) -> {
+            Set<SseEmitter> target = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            target.add(emitter);
+            return target;
+        });
+
+        emitter.onCompletion(() -> remove(key, emitter));
+        emitter.onTimeout(() -> remove(key, emitter));
+        emitter.onError(e -> remove(key, emitter));
+        return emitter;
+    }
+
+    /**
+     * Push a delivery to the receiver's streams, only after the send transaction committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMailDelivered(MailDeliveredEvent event) {
+        Set<SseEmitter> emitters = subscribers.get(event.receiverEmail().toLowerCase());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            dispatcher.execute(() -> send(emitter, SseEmitter.event().name(DELIVERY_EVENT).data(event)));
+        }
+    }
+
+    /**
+     * Comment-only heartbeat keeps proxies from closing idle streams
+     * and detects clients that went away without closing
+     */
+    @Scheduled(fixedRate = 25000)
+    public void heartbeat() {
+        subscribers.values().forEach(emitters -> emitters.forEach(emitter ->
+                dispatcher.execute(() -> send(emitter, SseEmitter.event().comment("keep-alive")))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        dispatcher.shutdown();
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Client disconnected; completing triggers the removal callbacks
+            emitter.completeWithError(e);
+        }
+    }
+
+    // Callbacks may fire more than once per emitter; only the first removal releases the slot
+    private void remove(String key, SseEmitter emitter) {
+        AtomicBoolean removed = new AtomicBoolean();
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            removed.set(emitters.remove(emitter));
+            return emitters.isEmpty() ? null : emitters;
+        });
+        if (removed.get()) {
+            openStreams.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package eg.edu.alexu.cse.mail_server.Service.push;
+
+/**
+ * Thrown by MailEventHub when mail.push.max-connections streams are already open
+ * Answered with 503 and a Retry-After header, so EventSource clients back off
+ */
+public class TooManyStreamsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyStreamsException(long retryAfterSeconds) {
+        super("Too many open event streams, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
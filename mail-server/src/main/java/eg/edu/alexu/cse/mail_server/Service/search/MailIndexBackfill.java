@@ -0,0 +1,49 @@
+package eg.edu.alexu.cse.mail_server.Service.search;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Repository.MailTermRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Indexes mails stored before the search index existed
+ * Runs in the background after startup; searches scan the mailbox as before
+ * until it has finished
+ */
+@Component
+@RequiredArgsConstructor
+public class MailIndexBackfill {
+    private static final int BATCH_SIZE = 200;
+
+    private final MailTermRepository mailTermRepository;
+    private final MailSearchIndex mailSearchIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofVirtual().name("mail-index-backfill").start(this::backfill);
+    }
+
+    private void backfill() {
+        long indexed = 0;
+        Long afterId = 0L;
+        try {
+            List<Long> mailIds;
+            while (!(mailIds = mailTermRepository.findUnindexedMailIds(afterId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+                mailSearchIndex.indexExisting(mailIds);
+                indexed += mailIds.size();
+                afterId = mailIds.get(mailIds.size() - 1);
+            }
+            mailSearchIndex.markReady();
+            if (indexed > 0) {
+                System.out.println("Search index: indexed " + indexed + " existing mails");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Search index backfill failed, searches keep scanning mailboxes: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package eg.edu.alexu.cse.mail_server.Service.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.IndexedField;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MailTerm;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailTermRepository;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.BodyFilter;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.FilterStrategy;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.SubjectFilter;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Per-user inverted index of mail subjects and bodies
+ *
+ * Text is split into words exactly as BodyFilter and SubjectFilter split it.
+ * Body words are indexed as they are, so a prefix lookup finds the mails
+ * whose body has a word starting with the query word. Subject words are
+ * indexed with all their suffixes, so the same prefix lookup also finds a
+ * query word inside a subject word, which is what SubjectFilter matches.
+ *
+ * The index only narrows the candidates: the filters still run on the mails
+ * it returns, so results and scores are the same as a full scan
+ */
+@Service
+@RequiredArgsConstructor
+public class MailSearchIndex {
+    public static final String WORD_SEPARATORS = "[\\s,.;:!?]+";
+    static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_POSITIONS = 50;
+    private static final char LIKE_ESCAPE = '!';
+
+    private final MailTermRepository mailTermRepository;
+    private final MailRepository mailRepository;
+
+    // Set once mails written before the index existed have been indexed
+    private volatile boolean ready;
+
+    /**
+     * Index a newly written mail copy (its ID must be assigned)
+     */
+    @Transactional
+    public void index(Mail mail) {
+        indexAll(List.of(mail));
+    }
+
+    /**
+     * Index newly written mail copies
+     */
+    @Transactional
+    public void indexAll(Collection<Mail> mails) {
+        List<MailTerm> postings = new ArrayList<>();
+        for (Mail mail : mails) {
+            Long ownerId = mail.getOwner() != null ? mail.getOwner().getUserId() : mail.getOwnerId();
+            addPostings(postings, ownerId, mail.getMailId(), IndexedField.SUBJECT, mail.getSubject());
+            addPostings(postings, ownerId, mail.getMailId(), IndexedField.BODY, mail.getBody());
+        }
+        mailTermRepository.saveAll(postings);
+    }
+
+    /**
+     * Replace the postings of a mail whose subject or body changed (draft saves)
+     */
+    @Transactional
+    public void reindex(Mail mail) {
+        mailTermRepository.deleteByMailIds(List.of(mail.getMailId()));
+        index(mail);
+    }
+
+    /**
+     * Drop the postings of mails that are about to be deleted
+     */
+    @Transactional
+    public void remove(Collection<Long> mailIds) {
+        if (!mailIds.isEmpty()) {
+            mailTermRepository.deleteByMailIds(mailIds);
+        }
+    }
+
+    /**
+     * Index the given existing mails (backfill)
+     */
+    @Transactional
+    public void indexExisting(List<Long> mailIds) {
+        indexAll(mailRepository.findAllById(mailIds));
+    }
+
+    void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Mails of an owner that can match a body or subject filter
+     *
+     * @param ownerId mailbox owner
+     * @param filter one of the active filters
+     * @return candidate mail IDs, or null if the index cannot narrow this filter
+     */
+    public Set<Long> findCandidates(Long ownerId, FilterStrategy filter) {
+        if (!ready) {
+            return null;
+        }
+        if (filter instanceof BodyFilter bodyFilter) {
+            return lookup(ownerId, IndexedField.BODY, bodyFilter.getBody());
+        }
+        if (filter instanceof SubjectFilter subjectFilter) {
+            return lookup(ownerId, IndexedField.SUBJECT, subjectFilter.getQuery());
+        }
+        return null;
+    }
+
+    // Any query word matching is enough (both filters OR their words)
+    private Set<Long> lookup(Long ownerId, IndexedField field, String query) {
+        if (query == null) {
+            return null;
+        }
+        String[] words = query.toLowerCase().split(WORD_SEPARATORS);
+        Set<Long> mailIds = new HashSet<>();
+        for (String word : words) {
+            // An empty word matches every subject in SubjectFilter; nothing to narrow
+            if (word.isEmpty()) {
+                return null;
+            }
+            mailIds.addAll(mailTermRepository.findMailIdsByTermPrefix(ownerId, field, likePrefix(truncate(word))));
+        }
+        return words.length == 0 ? null : mailIds;
+    }
+
+    private void addPostings(List<MailTerm> postings, Long ownerId, Long mailId, IndexedField field, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        Map<String, List<Integer>> positionsByTerm = new LinkedHashMap<>();
+        String[] words = text.toLowerCase().split(WORD_SEPARATORS);
+        for (int position = 0; position < words.length; position++) {
+            String word = words[position];
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (field == IndexedField.SUBJECT) {
+                for (int start = 0; start < word.length(); start++) {
+                    positionsByTerm.computeIfAbsent(truncate(word.substring(start)), t -> new ArrayList<>()).add(position);
+                }
+            } else {
+                positionsByTerm.computeIfAbsent(truncate(word), t -> new ArrayList<>()).add(position);
+            }
+        }
+
+        positionsByTerm.forEach((term, positions) -> postings.add(MailTerm.builder()
+                .ownerId(ownerId)
+                .mailId(mailId)
+                .field(field)
+                .term(term)
+                .frequency(positions.size())
+                .positions(joinPositions(positions))
+                .build()));
+    }
+
+    private String joinPositions(List<Integer> positions) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < Math.min(positions.size(), MAX_POSITIONS); i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(positions.get(i));
+        }
+        return joined.toString();
+    }
+
+    private String truncate(String word) {
+        return word.length() <= MAX_TERM_LENGTH ? word : word.substring(0, MAX_TERM_LENGTH);
+    }
+
+    private String likePrefix(String word) {
+        StringBuilder prefix = new StringBuilder(word.length() + 1);
+        for (char c : word.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                prefix.append(LIKE_ESCAPE);
+            }
+            prefix.append(c);
+        }
+        return prefix.append('%').toString();
+    }
+}
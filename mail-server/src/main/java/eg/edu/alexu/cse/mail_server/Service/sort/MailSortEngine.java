@@ -0,0 +1,107 @@
+package eg.edu.alexu.cse.mail_server.Service.sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Turns sort criteria into a database ORDER BY and keyset positions
+ * The ORDER BY always ends with mailId so every row has a unique position,
+ * which lets the database seek straight to the next page through the
+ * (owner, folder, key) indexes declared on Mail instead of sorting the folder
+ */
+@Component
+@RequiredArgsConstructor
+public class MailSortEngine {
+    private static final String ID_PROPERTY = "mailId";
+    private static final String ENTRY_SEPARATOR = ".";
+    private static final String VALUE_SEPARATOR = "~";
+
+    private final MailRepository mailRepository;
+
+    public Sort toSort(List<MailSortKey> keys, boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        List<String> properties = new ArrayList<>();
+        for (MailSortKey key : keys) {
+            properties.add(key.getProperty());
+        }
+        properties.add(ID_PROPERTY);
+        return Sort.by(direction, properties.toArray(new String[0]));
+    }
+
+    /**
+     * Encode the keyset of the last row of a page as an opaque URL-safe token
+     */
+    public String encodeCursor(ScrollPosition position) {
+        Map<String, Object> keys = ((KeysetScrollPosition) position).getKeys();
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : keys.entrySet()) {
+            entries.add(entry.getKey() + VALUE_SEPARATOR + encodePart(String.valueOf(entry.getValue())));
+        }
+        return encodePart(String.join(ENTRY_SEPARATOR, entries));
+    }
+
+    /**
+     * Decode a token produced by {@link #encodeCursor(ScrollPosition)} for the same criteria
+     *
+     * @throws IllegalArgumentException if the token is malformed or was built for other criteria
+     */
+    public ScrollPosition decodeCursor(String token, List<MailSortKey> sortKeys) {
+        Map<String, String> raw = new LinkedHashMap<>();
+        try {
+            for (String entry : decodePart(token).split("\\" + ENTRY_SEPARATOR)) {
+                int split = entry.indexOf(VALUE_SEPARATOR);
+                raw.put(entry.substring(0, split), decodePart(entry.substring(split + 1)));
+            }
+
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (MailSortKey key : sortKeys) {
+                keys.put(key.getProperty(), key.parse(requireValue(raw, key.getProperty())));
+            }
+            keys.put(ID_PROPERTY, Long.valueOf(requireValue(raw, ID_PROPERTY)));
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+
+    /**
+     * Fill the normalized sort columns of mails stored before they existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSortColumns() {
+        int updated = mailRepository.backfillSortColumns();
+        if (updated > 0) {
+            System.out.println("Backfilled sort columns for " + updated + " emails");
+        }
+    }
+
+    private String requireValue(Map<String, String> raw, String property) {
+        String value = raw.get(property);
+        if (value == null) {
+            throw new IllegalArgumentException("Cursor is missing " + property);
+        }
+        return value;
+    }
+
+    private String encodePart(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodePart(String value) {
+        return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package eg.edu.alexu.cse.mail_server.Service.sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sort criteria accepted by the sort endpoint
+ * Each key maps to an indexed column of Mail and knows how to parse
+ * its value back from a cursor token
+ */
+public enum MailSortKey {
+    SENDER("sender", "senderSort", value -> value),
+    SUBJECT("subject", "subjectSort", value -> value),
+    DATE("date", "timestamp", LocalDateTime::parse),
+    PRIORITY("priority", "priority", Integer::valueOf);
+
+    private final String criteria;
+    private final String property;
+    private final Function<String, Object> parser;
+
+    MailSortKey(String criteria, String property, Function<String, Object> parser) {
+        this.criteria = criteria;
+        this.property = property;
+        this.parser = parser;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Object parse(String value) {
+        return parser.apply(value);
+    }
+
+    /**
+     * Parse a comma separated criteria list such as "priority,date"
+     * The first key is the primary order, the following ones break ties
+     *
+     * @throws IllegalArgumentException on an unknown or repeated criterion
+     */
+    public static List<MailSortKey> parseAll(String criteria) {
+        List<MailSortKey> keys = new ArrayList<>();
+        for (String part : criteria.split(",")) {
+            MailSortKey key = fromCriteria(part.trim());
+            if (keys.contains(key)) {
+                throw new IllegalArgumentException("Sort criteria repeated: " + part);
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static MailSortKey fromCriteria(String criteria) {
+        for (MailSortKey key : values()) {
+            if (key.criteria.equalsIgnoreCase(criteria)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort criteria: " + criteria);
+    }
+}
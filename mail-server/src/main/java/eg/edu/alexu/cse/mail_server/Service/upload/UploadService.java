@@ -0,0 +1,269 @@
+package eg.edu.alexu.cse.mail_server.Service.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import eg.edu.alexu.cse.mail_server.Entity.UploadSession;
+import eg.edu.alexu.cse.mail_server.Entity.UploadStatus;
+import eg.edu.alexu.cse.mail_server.Repository.AttachmentBlobRepository;
+import eg.edu.alexu.cse.mail_server.Repository.UploadSessionRepository;
+import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.FileStorageService;
+import eg.edu.alexu.cse.mail_server.dto.UploadRequestDto;
+import eg.edu.alexu.cse.mail_server.dto.UploadSessionDto;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resumable uploads: create a session, PUT chunks at increasing offsets,
+ * then complete it. Completed content is stored as a blob and attached to a
+ * mail by referencing the upload id in the compose request
+ *
+ * Chunk bodies are streamed to disk outside any transaction; the database
+ * only records the new offset afterwards. Chunks of one session are
+ * serialized with an in-process lock
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadService {
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserRepository userRepository;
+    private final AttachmentBlobRepository blobRepository;
+    private final FileStorageService fileStorageService;
+
+    private final Map<String, ReentrantLock> sessionLocks = new ConcurrentHashMap<>();
+
+    @Value("${mail.uploads.max-bytes:5368709120}")
+    private long maxUploadBytes;
+
+    @Value("${mail.uploads.expiry-hours:24}")
+    private long expiryHours;
+
+    /**
+     * Open an upload session
+     *
+     * @param request owner, file name, total size and optional SHA-256
+     * @return the new session, expecting its first chunk at offset 0
+     */
+    public UploadSessionDto createSession(UploadRequestDto request) {
+        userRepository.findByEmail(request.getUserEmail())
+                .orElseThrow(() -> new RuntimeException("User not found: " + request.getUserEmail()));
+        if (request.getFileName() == null || request.getFileName().isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        if (request.getSize() <= 0 || request.getSize() > maxUploadBytes) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxUploadBytes + " bytes");
+        }
+        if (request.getSha256() != null && !request.getSha256().matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hex digits");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = uploadSessionRepository.save(UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .ownerEmail(request.getUserEmail())
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .totalSize(request.getSize())
+                .receivedBytes(0)
+                .expectedHash(request.getSha256())
+                .status(UploadStatus.OPEN)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        return toDto(session);
+    }
+
+    /**
+     * Current state of a session; a resuming client continues at receivedBytes
+     */
+    public UploadSessionDto getSession(String uploadId) {
+        return toDto(findSession(uploadId));
+    }
+
+    /**
+     * Append a chunk to an open session
+     *
+     * @param uploadId the session
+     * @param offset where this chunk starts; must equal the session's receivedBytes
+     * @param content the chunk bytes
+     * @return the session after the chunk (receivedBytes may be short if the client disconnected)
+     * @throws IllegalArgumentException if the offset is wrong or the chunk is too long
+     * @throws IOException if writing to disk fails
+     */
+    public UploadSessionDto appendChunk(String uploadId, long offset, InputStream content) throws IOException {
+        ReentrantLock lock = lockSession(uploadId);
+        try {
+            UploadSession session = findSession(uploadId);
+            if (session.getStatus() != UploadStatus.OPEN) {
+                throw new IllegalArgumentException("Upload " + uploadId + " is already completed");
+            }
+            if (offset != session.getReceivedBytes()) {
+                throw new IllegalArgumentException("Upload " + uploadId + " expects offset "
+                        + session.getReceivedBytes() + " but got " + offset);
+            }
+
+            long written = fileStorageService.writeChunk(uploadId, offset,
+                    content, session.getTotalSize() - offset);
+            if (written > 0) {
+                uploadSessionRepository.recordChunk(uploadId, offset, offset + written,
+                        UploadStatus.OPEN, LocalDateTime.now());
+            }
+            session.setReceivedBytes(offset + written);
+            return toDto(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Verify and store a fully received upload
+     * On a checksum mismatch the received bytes are discarded and the session
+     * starts over at offset 0
+     *
+     * @param uploadId the session
+     * @param sha256 optional SHA-256 (hex) to check; overrides the one given at creation
+     * @return the completed session with its content hash
+     */
+    public UploadSessionDto complete(String uploadId, String sha256) throws IOException {
+        ReentrantLock lock = lockSession(uploadId);
+        try {
+            UploadSession session = findSession(uploadId);
+            if (session.getStatus() == UploadStatus.COMPLETED) {
+                return toDto(session);
+            }
+            if (session.getReceivedBytes() != session.getTotalSize()) {
+                throw new IllegalArgumentException("Upload " + uploadId + " has " + session.getReceivedBytes()
+                        + " of " + session.getTotalSize() + " bytes");
+            }
+
+            String expectedHash = sha256 != null ? sha256 : session.getExpectedHash();
+            FileStorageService.StoredBlob stored;
+            try {
+                stored = fileStorageService.completeUpload(uploadId, expectedHash, session.getContentType());
+            } catch (IllegalArgumentException e) {
+                uploadSessionRepository.resetProgress(uploadId, LocalDateTime.now());
+                throw e;
+            }
+
+            uploadSessionRepository.markCompleted(uploadId, stored.contentHash(),
+                    UploadStatus.OPEN, UploadStatus.COMPLETED, LocalDateTime.now());
+            sessionLocks.remove(uploadId);
+            session.setStatus(UploadStatus.COMPLETED);
+            session.setContentHash(stored.contentHash());
+            return toDto(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Abandon a session and remove whatever was received
+     */
+    public void cancel(String uploadId) throws IOException {
+        ReentrantLock lock = lockSession(uploadId);
+        try {
+            UploadSession session = findSession(uploadId);
+            uploadSessionRepository.delete(session);
+            discardContent(session);
+        } finally {
+            sessionLocks.remove(uploadId);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take completed uploads for a mail being sent
+     * Each session is removed in the caller's transaction, so an upload is
+     * attached at most once and stays available if the send rolls back
+     *
+     * @param uploadIds ids from the compose request (may be null)
+     * @param ownerEmail the sender; only their own uploads can be used
+     * @return the sessions, in request order
+     * @throws IllegalArgumentException if an upload is unknown, not completed or not the sender's
+     */
+    public List<UploadSession> takeCompleted(List<String> uploadIds, String ownerEmail) {
+        List<UploadSession> uploads = new ArrayList<>();
+        if (uploadIds == null) {
+            return uploads;
+        }
+        for (String uploadId : uploadIds) {
+            UploadSession session = findSession(uploadId);
+            if (!session.getOwnerEmail().equalsIgnoreCase(ownerEmail)) {
+                throw new IllegalArgumentException("Upload " + uploadId + " does not belong to " + ownerEmail);
+            }
+            if (uploadSessionRepository.deleteCompleted(uploadId, UploadStatus.COMPLETED) == 0) {
+                throw new IllegalArgumentException("Upload " + uploadId + " is not completed");
+            }
+            uploads.add(session);
+        }
+        return uploads;
+    }
+
+    /**
+     * Remove sessions that were neither finished nor used within mail.uploads.expiry-hours
+     */
+    @Scheduled(fixedDelayString = "${mail.uploads.cleanup-ms:3600000}")
+    public void removeExpiredSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(expiryHours);
+        int removed = 0;
+        for (UploadSession session : uploadSessionRepository.findByUpdatedAtBefore(cutoff)) {
+            if (uploadSessionRepository.deleteIfStale(session.getId(), cutoff) == 0) {
+                continue;
+            }
+            try {
+                discardContent(session);
+                removed++;
+            } catch (IOException e) {
+                System.err.println("Failed to remove expired upload " + session.getId() + ": " + e.getMessage());
+            }
+            sessionLocks.remove(session.getId());
+        }
+        if (removed > 0) {
+            System.out.println("Removed " + removed + " expired upload sessions");
+        }
+    }
+
+    // Part file of an open session; blob of a completed one unless an attachment uses it
+    private void discardContent(UploadSession session) throws IOException {
+        if (session.getStatus() == UploadStatus.OPEN) {
+            fileStorageService.deleteUploadPart(session.getId());
+        } else if (session.getContentHash() != null && !blobRepository.existsById(session.getContentHash())) {
+            fileStorageService.deleteBlobFile(session.getContentHash());
+        }
+    }
+
+    private ReentrantLock lockSession(String uploadId) {
+        ReentrantLock lock = sessionLocks.computeIfAbsent(uploadId, id -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new IllegalArgumentException("Another request is already writing upload " + uploadId);
+        }
+        return lock;
+    }
+
+    private UploadSession findSession(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found: " + uploadId));
+    }
+
+    private UploadSessionDto toDto(UploadSession session) {
+        return UploadSessionDto.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .size(session.getTotalSize())
+                .receivedBytes(session.getReceivedBytes())
+                .status(session.getStatus().name())
+                .contentHash(session.getContentHash())
+                .build();
+    }
+}
@@ -1,11 +1,15 @@
 package eg.edu.alexu.cse.mail_server.advice;
 
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import eg.edu.alexu.cse.mail_server.Service.push.TooManyStreamsException;
+
 import java.util.Map;
 
 @ControllerAdvice
@@ -24,6 +28,34 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
+    /**
+     * Handle stale writes (e.g. a draft autosave based on an old version)
+     * Returns 409 Conflict so the client can reload and retry
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        System.err.println("Stale update rejected: " + ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Handle a full event stream pool
+     * Returns 503 with Retry-After and no body: the request accepts only
+     * text/event-stream, so a JSON error body could not be written
+     */
+    @ExceptionHandler(TooManyStreamsException.class)
+    public ResponseEntity<Void> handleTooManyStreams(TooManyStreamsException ex) {
+        System.err.println("Event stream rejected: " + ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
     /**
      * Handle generic runtime exceptions
      * Returns 500 Internal Server Error for unexpected errors
@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 
 /**
  * DTO for sending attachment data to the frontend
- * Includes file content encoded as Base64 string
+ * Normally a descriptor only - the bytes are streamed from downloadUrl.
+ * fileData is filled only when inline data was requested and the file is small
  */
 @Data
 @Builder
@@ -23,9 +24,19 @@ public class AttachmentDTO {
 
     private Long fileSize;
 
+    /**
+     * SHA-256 of the file content (hex), usable as a cache key by the frontend
+     */
+    private String contentHash;
+
+    /**
+     * Relative URL that streams the file content
+     */
+    private String downloadUrl;
+
     /**
      * File content encoded as Base64 string
-     * Frontend can decode this to display/download the file
+     * Only present for ?inline=true requests on files under the inline size limit
      */
     private String fileData;
 }
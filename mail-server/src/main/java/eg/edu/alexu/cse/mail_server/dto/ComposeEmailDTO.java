@@ -14,4 +14,13 @@ public class ComposeEmailDTO {
     private String subject;
     private String body;
     private int priority;
+
+    // Completed resumable uploads to attach (see /api/mail/uploads)
+    private List<String> uploadIds;
+
+    // Set to save over an existing draft instead of creating a new one
+    private Long draftId;
+
+    // Version of the draft the client last saw (returned by the previous save)
+    private Long draftVersion;
 }
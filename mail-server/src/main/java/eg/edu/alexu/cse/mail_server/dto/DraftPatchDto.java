@@ -0,0 +1,33 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Body of PATCH /api/mail/draft/{draftId}
+ * Only the fields that changed since the last save are sent; null means unchanged
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DraftPatchDto {
+
+    // Owner of the draft
+    private String sender;
+
+    // Version returned by the previous save; required
+    private Long version;
+
+    private List<String> receivers;
+
+    private String subject;
+
+    private String body;
+
+    private Integer priority;
+}
@@ -0,0 +1,20 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of a draft save: send draftId and version with the next autosave
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DraftSavedDto {
+
+    private Long draftId;
+
+    private long version;
+}
@@ -23,6 +23,9 @@ public class EmailViewDto {
     private boolean isRead;
     private String folderName;
 
+    // Current version of a draft, to send with the next autosave (null outside DRAFTS)
+    private Long draftVersion;
+
     // Full attachment data with file content (includes Base64 encoded files)
     private List<AttachmentDTO> attachments;
 
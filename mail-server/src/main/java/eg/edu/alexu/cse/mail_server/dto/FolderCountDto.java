@@ -0,0 +1,20 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Total and unread message counts of one folder, for folder badges
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FolderCountDto {
+
+    private String folderName;
+
+    private long total;
+
+    private long unread;
+}
@@ -0,0 +1,35 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Mailbox delta since a given mod-sequence
+ * Clients store highestModSeq and pass it as ?since= on the next poll;
+ * while hasMore is true the next page is fetched the same way
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MailChangesDto {
+
+    // Highest mod-sequence covered by this response
+    private long highestModSeq;
+
+    // More changes are waiting above highestModSeq
+    private boolean hasMore;
+
+    // Removals older than since were pruned; drop the local copy and sync again from 0
+    private boolean fullResyncRequired;
+
+    // Mails added, flagged or moved since the requested mod-sequence
+    private List<MailSummaryDto> changed;
+
+    // IDs of mails permanently deleted since the requested mod-sequence
+    private List<Long> expunged;
+}
@@ -0,0 +1,24 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a folder listing
+ * nextCursor is null when there are no more mails after this page,
+ * otherwise it is passed back as ?cursor= to fetch the following page
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MailPageDto<T> {
+
+    private List<T> items;
+
+    private String nextCursor;
+}
@@ -0,0 +1,33 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight row for folder listings
+ * Built directly by a JPQL constructor expression, so the full body
+ * and the attachment files are never loaded - only a short snippet
+ * of the body and the number of attachments
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MailSummaryDto {
+
+    private Long id;
+    private String sender;
+    private String receiver;
+    private String subject;
+    private String snippet;
+    private LocalDateTime timestamp;
+    private int priority;
+    @JsonProperty("isRead")
+    private boolean isRead;
+    private String folderName;
+    private Long attachmentCount;
+    private long modSeq;
+}
@@ -0,0 +1,35 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delivery progress of a sent mail, returned by GET /api/mail/outbox/{outboxId}
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxStatusDto {
+
+    private Long outboxId;
+
+    // ID of the sender's SENT copy
+    private Long mailId;
+
+    // PENDING, DELIVERING, DELIVERED or FAILED
+    private String status;
+
+    private int attempts;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    private List<RecipientStatusDto> recipients;
+}
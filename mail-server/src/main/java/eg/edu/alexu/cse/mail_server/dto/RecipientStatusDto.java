@@ -0,0 +1,26 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delivery outcome for one recipient of a sent mail
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecipientStatusDto {
+
+    private String receiver;
+
+    // PENDING, DELIVERED or FAILED
+    private String status;
+
+    // ID of the recipient's INBOX copy once delivered
+    private Long mailId;
+
+    private String error;
+}
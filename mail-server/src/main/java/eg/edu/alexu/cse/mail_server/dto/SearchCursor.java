@@ -0,0 +1,42 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position inside ranked search results: the (score, timestamp, mailId) of
+ * the last mail on the previous page. Results are ordered by score DESC,
+ * then timestamp DESC, then mailId DESC, so the triple is unique.
+ * Encoded as an opaque URL-safe token, like {@link MailCursor}
+ */
+public record SearchCursor(int score, LocalDateTime timestamp, Long mailId) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = score + SEPARATOR + timestamp + SEPARATOR + mailId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new SearchCursor(
+                    Integer.parseInt(parts[0]),
+                    "null".equals(parts[1]) ? null : LocalDateTime.parse(parts[1]),
+                    Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
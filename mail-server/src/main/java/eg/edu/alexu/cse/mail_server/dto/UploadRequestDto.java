@@ -0,0 +1,28 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Body of POST /api/mail/uploads - opens a resumable upload session
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadRequestDto {
+
+    private String userEmail;
+
+    private String fileName;
+
+    private String contentType;
+
+    // Total size of the file in bytes
+    private long size;
+
+    // Optional SHA-256 (hex) of the whole file, verified when the upload completes
+    private String sha256;
+}
@@ -0,0 +1,30 @@
+package eg.edu.alexu.cse.mail_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a resumable upload; receivedBytes is the offset of the next chunk
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionDto {
+
+    private String uploadId;
+
+    private String fileName;
+
+    private long size;
+
+    private long receivedBytes;
+
+    // OPEN or COMPLETED
+    private String status;
+
+    // SHA-256 of the assembled file once COMPLETED
+    private String contentHash;
+}
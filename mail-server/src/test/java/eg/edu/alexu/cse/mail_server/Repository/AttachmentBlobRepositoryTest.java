@@ -0,0 +1,86 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.AttachmentBlob;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class AttachmentBlobRepositoryTest {
+    private static final String HASH = "a".repeat(64);
+
+    @Autowired
+    private AttachmentBlobRepository blobRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void firstUpsertCreatesTheBlobAndLaterOnesOnlyAddReferences() {
+        blobRepository.upsertRefCount(HASH, "/blobs/first", 10L, 1, IndexingStatus.PENDING.name(), LocalDateTime.now());
+        blobRepository.upsertRefCount(HASH, "/blobs/second", 10L, 2, IndexingStatus.PENDING.name(), LocalDateTime.now());
+
+        AttachmentBlob blob = reload();
+        assertEquals(3, blob.getRefCount());
+        assertEquals("/blobs/first", blob.getFilePath());
+        assertEquals(IndexingStatus.PENDING, blob.getIndexingStatus());
+    }
+
+    @Test
+    void adjustRefCountReportsAMissingBlob() {
+        assertEquals(0, blobRepository.adjustRefCount(HASH, 1));
+    }
+
+    @Test
+    void blobIsOnlyPurgedOnceUnreferenced() {
+        blobRepository.upsertRefCount(HASH, "/blobs/file", 10L, 2, IndexingStatus.PENDING.name(), LocalDateTime.now());
+
+        blobRepository.adjustRefCount(HASH, -1);
+        assertEquals(0, blobRepository.deleteIfUnreferenced(HASH));
+        assertEquals(1, reload().getRefCount());
+
+        blobRepository.adjustRefCount(HASH, -1);
+        assertEquals(1, blobRepository.deleteIfUnreferenced(HASH));
+        entityManager.clear();
+        assertFalse(blobRepository.existsById(HASH));
+    }
+
+    @Test
+    void reuploadAfterPurgeStartsFromOneReference() {
+        blobRepository.upsertRefCount(HASH, "/blobs/file", 10L, 1, IndexingStatus.PENDING.name(), LocalDateTime.now());
+        blobRepository.adjustRefCount(HASH, -1);
+        blobRepository.deleteIfUnreferenced(HASH);
+
+        blobRepository.upsertRefCount(HASH, "/blobs/file", 10L, 1, IndexingStatus.PENDING.name(), LocalDateTime.now());
+
+        assertTrue(blobRepository.existsById(HASH));
+        assertEquals(1, reload().getRefCount());
+    }
+
+    @Test
+    void indexingClaimIsTakenOnceAndCanBeGivenBack() {
+        blobRepository.upsertRefCount(HASH, "/blobs/file", 10L, 1, IndexingStatus.PENDING.name(), LocalDateTime.now());
+
+        assertEquals(1, blobRepository.transitionIndexing(HASH, IndexingStatus.PENDING, IndexingStatus.INDEXING));
+        assertEquals(0, blobRepository.transitionIndexing(HASH, IndexingStatus.PENDING, IndexingStatus.INDEXING));
+
+        assertEquals(1, blobRepository.transitionIndexing(HASH, IndexingStatus.INDEXING, IndexingStatus.PENDING));
+        assertEquals(IndexingStatus.PENDING, reload().getIndexingStatus());
+    }
+
+    private AttachmentBlob reload() {
+        entityManager.clear();
+        return blobRepository.findById(HASH).orElseThrow();
+    }
+}
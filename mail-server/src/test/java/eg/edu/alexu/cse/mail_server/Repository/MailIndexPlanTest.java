@@ -0,0 +1,156 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.persistence.EntityManager;
+
+/**
+ * The composite indexes exist and the hot queries plan through them
+ * Mails are seeded with INSERT ... SELECT, so the plans are taken over
+ * a realistically sized table; page latencies are printed for comparison
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class MailIndexPlanTest {
+    private static final int SEEDED_MAILS = 60_000;
+    private static final int OWNERS = 4;
+    private static final List<String> FOLDER_INDEXES = List.of(
+            "idx_mail_owner_folder_timestamp", "idx_mail_owner_folder_sender",
+            "idx_mail_owner_folder_subject", "idx_mail_owner_folder_priority");
+
+    @Autowired
+    private MailRepository mailRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long ownerId;
+
+    @BeforeEach
+    void setUp() {
+        List<Long> ownerIds = new ArrayList<>();
+        for (int i = 0; i < OWNERS; i++) {
+            User user = User.builder()
+                    .email("user" + i + "@mail.test")
+                    .firstName("Test")
+                    .lastName("User")
+                    .password("secret")
+                    .build();
+            entityManager.persist(user);
+            ownerIds.add(user.getUserId());
+        }
+        entityManager.flush();
+        ownerId = ownerIds.get(0);
+
+        // Each owner gets a block of mails one second apart, cycling through the folders;
+        // trashed mails were deleted up to 60 days ago
+        int perOwner = SEEDED_MAILS / OWNERS;
+        for (int i = 0; i < OWNERS; i++) {
+            entityManager.createNativeQuery("INSERT INTO mail (mail_id, sender, receiver, subject, sender_sort, " +
+                            "subject_sort, timestamp, priority, folder_name, is_read, deleted_at, mod_seq, draft_version, " +
+                            "sender_id, owner_id) " +
+                            "SELECT x, 'sender@mail.test', 'receiver@mail.test', CONCAT('subject ', x), 'sender@mail.test', " +
+                            "CONCAT('subject ', x), DATEADD('SECOND', x, TIMESTAMP '2025-01-01 00:00:00'), 1 + MOD(x, 3), " +
+                            "CASE MOD(x, 4) WHEN 0 THEN 'INBOX' WHEN 1 THEN 'SENT' WHEN 2 THEN 'trash' ELSE 'Work' END, " +
+                            "FALSE, CASE WHEN MOD(x, 4) = 2 THEN DATEADD('DAY', -MOD(x, 60), CURRENT_TIMESTAMP) END, " +
+                            "x, 0, :ownerId, :ownerId FROM SYSTEM_RANGE(:from, :to)")
+                    .setParameter("ownerId", ownerIds.get(i))
+                    .setParameter("from", (long) i * perOwner + 1)
+                    .setParameter("to", (long) (i + 1) * perOwner)
+                    .executeUpdate();
+        }
+    }
+
+    @Test
+    void declaredIndexesExist() {
+        Set<String> mailIndexes = indexNames("mail");
+        for (String index : FOLDER_INDEXES) {
+            assertTrue(mailIndexes.contains(index), index + " missing, found " + mailIndexes);
+        }
+        assertTrue(mailIndexes.contains("idx_mail_owner_timestamp"));
+        assertTrue(mailIndexes.contains("idx_mail_folder_deleted_at"));
+        assertTrue(mailIndexes.contains("idx_mail_owner_modseq"));
+        assertTrue(indexNames("attachment").contains("idx_attachment_mail"));
+        assertTrue(indexNames("contacts").contains("idx_contact_user_name"));
+    }
+
+    @Test
+    void folderPageAndTrashPurgeUseTheirIndexes() {
+        String folderPage = explain("SELECT m.mail_id, m.timestamp FROM mail m WHERE m.owner_id = " + ownerId +
+                " AND m.folder_name IN ('INBOX') ORDER BY m.timestamp DESC, m.mail_id DESC LIMIT 50");
+        assertTrue(folderPage.contains("idx_mail_owner_folder_timestamp"), folderPage);
+
+        String nextPage = explain("SELECT m.mail_id, m.timestamp FROM mail m WHERE m.owner_id = " + ownerId +
+                " AND m.folder_name IN ('INBOX') AND m.timestamp < TIMESTAMP '2025-01-01 08:00:00' " +
+                "ORDER BY m.timestamp DESC, m.mail_id DESC LIMIT 50");
+        assertTrue(nextPage.contains("idx_mail_owner_folder_timestamp"), nextPage);
+
+        String purge = explain("SELECT m.mail_id FROM mail m WHERE m.folder_name = 'trash' " +
+                "AND m.deleted_at < DATEADD('DAY', -30, CURRENT_TIMESTAMP)");
+        assertTrue(purge.contains("idx_mail_folder_deleted_at"), purge);
+    }
+
+    @Test
+    void deepPageCostsAboutTheSameAsTheFirst() {
+        entityManager.clear();
+        // Warm up the query plans before timing
+        mailRepository.findFolderPage(ownerId, List.of("INBOX"), PageRequest.of(0, 50));
+
+        long start = System.nanoTime();
+        List<MailSummaryDto> first = mailRepository.findFolderPage(ownerId, List.of("INBOX"), PageRequest.of(0, 50));
+        long firstNanos = System.nanoTime() - start;
+
+        // Resume near the oldest mail of the folder: only INBOX mails 4, 8, ..., 100 are left
+        LocalDateTime deep = LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(100);
+        start = System.nanoTime();
+        List<MailSummaryDto> last = mailRepository.findFolderPageAfter(ownerId, List.of("INBOX"), deep,
+                Long.MAX_VALUE, PageRequest.of(0, 50));
+        long deepNanos = System.nanoTime() - start;
+
+        assertEquals(50, first.size());
+        assertEquals(25, last.size());
+        System.out.println("Folder page over " + SEEDED_MAILS + " mails: first " + firstNanos / 1_000 +
+                " us, deep " + deepNanos / 1_000 + " us");
+    }
+
+    private String explain(String sql) {
+        String plan = String.valueOf(entityManager.createNativeQuery("EXPLAIN " + sql).getSingleResult());
+        System.out.println(plan);
+        return plan.toLowerCase();
+    }
+
+    private Set<String> indexNames(String table) {
+        Set<String> names = new HashSet<>();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet indexes = metaData.getIndexInfo(null, null, table, false, false)) {
+                while (indexes.next()) {
+                    String name = indexes.getString("INDEX_NAME");
+                    if (name != null) {
+                        names.add(name.toLowerCase());
+                    }
+                }
+            }
+        });
+        return names;
+    }
+}
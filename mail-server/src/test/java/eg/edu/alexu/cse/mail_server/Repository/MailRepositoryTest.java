@@ -0,0 +1,196 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Service.sort.MailSortEngine;
+import eg.edu.alexu.cse.mail_server.Service.sort.MailSortKey;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class MailRepositoryTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private MailRepository mailRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User owner;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        owner = persistUser("owner@mail.test");
+        other = persistUser("other@mail.test");
+    }
+
+    @Test
+    void folderPagesWalkTheFolderNewestFirstWithoutGapsOrRepeats() {
+        List<Mail> inbox = new ArrayList<>();
+        inbox.add(persistMail(owner, "INBOX", START, "a@mail.test", "first", 1));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(1), "b@mail.test", "second", 2));
+        // Same timestamp: mailId breaks the tie
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(2), "c@mail.test", "third", 3));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(2), "d@mail.test", "fourth", 4));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(3), "e@mail.test", "fifth", 5));
+        persistMail(owner, "SENT", START.plusMinutes(4), "owner@mail.test", "not in inbox", 1);
+        persistMail(other, "INBOX", START.plusMinutes(5), "a@mail.test", "someone else's", 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> expected = inbox.stream()
+                .sorted(Comparator.comparing(Mail::getTimestamp).thenComparing(Mail::getMailId).reversed())
+                .map(Mail::getMailId)
+                .toList();
+
+        List<Long> paged = new ArrayList<>();
+        List<MailSummaryDto> page = mailRepository.findFolderPage(owner.getUserId(), List.of("INBOX"), PageRequest.of(0, 2));
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            page.forEach(summary -> paged.add(summary.getId()));
+            MailSummaryDto last = page.get(page.size() - 1);
+            page = mailRepository.findFolderPageAfter(owner.getUserId(), List.of("INBOX"),
+                    last.getTimestamp(), last.getId(), PageRequest.of(0, 2));
+        }
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void folderPageSummariesCarrySnippetAndAttachmentCount() {
+        Mail mail = persistMail(owner, "INBOX", START, "a@mail.test", "hello", 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        MailSummaryDto summary = mailRepository.findFolderPage(owner.getUserId(), List.of("INBOX"), PageRequest.of(0, 10)).get(0);
+
+        assertEquals(mail.getMailId(), summary.getId());
+        assertEquals("body of hello", summary.getSnippet());
+        assertEquals(0L, summary.getAttachmentCount());
+    }
+
+    @Test
+    void sortedWindowsFollowTheSortEngineOrderAcrossCursorTokens() {
+        List<Mail> inbox = new ArrayList<>();
+        inbox.add(persistMail(owner, "INBOX", START, "a@mail.test", "one", 3));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(1), "b@mail.test", "two", 1));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(2), "c@mail.test", "three", 3));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(2), "d@mail.test", "four", 2));
+        inbox.add(persistMail(owner, "INBOX", START.plusMinutes(3), "e@mail.test", "five", 3));
+        entityManager.flush();
+        entityManager.clear();
+
+        MailSortEngine sortEngine = new MailSortEngine(mailRepository);
+        List<MailSortKey> keys = MailSortKey.parseAll("priority,date");
+        Sort sort = sortEngine.toSort(keys, false);
+
+        List<Long> expected = inbox.stream()
+                .sorted(Comparator.comparingInt(Mail::getPriority)
+                        .thenComparing(Mail::getTimestamp)
+                        .thenComparing(Mail::getMailId)
+                        .reversed())
+                .map(Mail::getMailId)
+                .toList();
+
+        // Every window resumes from a token, as a client passing ?cursor= would
+        List<Long> paged = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        Window<Mail> window;
+        do {
+            window = mailRepository.findByOwnerIdAndFolderName(owner.getUserId(), "INBOX", position, sort, Limit.of(2));
+            window.forEach(mail -> paged.add(mail.getMailId()));
+            if (!window.isEmpty()) {
+                String cursor = sortEngine.encodeCursor(window.positionAt(window.size() - 1));
+                position = sortEngine.decodeCursor(cursor, keys);
+            }
+        } while (window.hasNext());
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void summariesByIdUseTheProjection() {
+        Mail first = persistMail(owner, "INBOX", START, "a@mail.test", "one", 1);
+        Mail second = persistMail(owner, "INBOX", START.plusMinutes(1), "b@mail.test", "two", 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<MailSummaryDto> summaries = mailRepository.findSummariesByIds(List.of(first.getMailId(), second.getMailId()));
+
+        assertEquals(2, summaries.size());
+        assertTrue(summaries.stream().anyMatch(summary -> "body of two".equals(summary.getSnippet())));
+    }
+
+    @Test
+    void draftSaveBasedOnAnOlderVersionIsRejected() {
+        Mail draft = persistMail(owner, "DRAFTS", START, owner.getEmail(), "draft", 1);
+        entityManager.flush();
+
+        // Two editors both loaded version 0; only the first save takes version 1
+        assertEquals(1, mailRepository.bumpDraftVersion(draft.getMailId(), 0));
+        assertEquals(0, mailRepository.bumpDraftVersion(draft.getMailId(), 0));
+        assertEquals(1, mailRepository.bumpDraftVersion(draft.getMailId(), 1));
+
+        entityManager.clear();
+        assertEquals(2, mailRepository.findById(draft.getMailId()).orElseThrow().getDraftVersion());
+    }
+
+    @Test
+    void onlyDraftsHaveVersionsBumped() {
+        Mail sent = persistMail(owner, "SENT", START, owner.getEmail(), "sent", 1);
+        entityManager.flush();
+
+        assertEquals(0, mailRepository.bumpDraftVersion(sent.getMailId(), 0));
+        assertFalse(mailRepository.existsByMailIdAndFolderName(sent.getMailId(), "DRAFTS"));
+    }
+
+    private User persistUser(String email) {
+        User user = User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Mail persistMail(User mailOwner, String folder, LocalDateTime timestamp, String sender, String subject, int priority) {
+        Mail mail = Mail.builder()
+                .sender(sender)
+                .receiver(mailOwner.getEmail())
+                .subject(subject)
+                .folderName(folder)
+                .timestamp(timestamp)
+                .priority(priority)
+                .senderRel(mailOwner)
+                .owner(mailOwner)
+                .build();
+        mail.setBody("body of " + subject);
+        entityManager.persist(mail);
+        return mail;
+    }
+}
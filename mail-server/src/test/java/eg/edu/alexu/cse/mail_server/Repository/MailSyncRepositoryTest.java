@@ -0,0 +1,189 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.MailExpunge;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Service.MailSyncService;
+import eg.edu.alexu.cse.mail_server.dto.MailChangesDto;
+import eg.edu.alexu.cse.mail_server.dto.MailSummaryDto;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class MailSyncRepositoryTest {
+
+    @Autowired
+    private MailboxStateRepository stateRepository;
+
+    @Autowired
+    private MailExpungeRepository expungeRepository;
+
+    @Autowired
+    private MailRepository mailRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private MailSyncService mailSyncService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        mailSyncService = new MailSyncService(stateRepository, expungeRepository, mailRepository);
+        owner = User.builder()
+                .email("owner@mail.test")
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(owner);
+    }
+
+    @Test
+    void upsertCreatesTheStateRowThenAddsToIt() {
+        assertNull(stateRepository.findHighestModSeq(owner.getUserId()));
+        assertEquals(0, stateRepository.increment(owner.getUserId()));
+
+        stateRepository.upsert(owner.getUserId(), 1);
+        stateRepository.upsert(owner.getUserId(), 3);
+        assertEquals(1, stateRepository.increment(owner.getUserId()));
+
+        assertEquals(5L, stateRepository.findHighestModSeq(owner.getUserId()));
+        assertEquals(0L, stateRepository.findPrunedModSeq(owner.getUserId()));
+    }
+
+    @Test
+    void prunedMarkOnlyMovesUp() {
+        stateRepository.upsert(owner.getUserId(), 10);
+
+        assertEquals(1, stateRepository.raisePrunedModSeq(owner.getUserId(), 6));
+        assertEquals(0, stateRepository.raisePrunedModSeq(owner.getUserId(), 4));
+
+        assertEquals(6L, stateRepository.findPrunedModSeq(owner.getUserId()));
+    }
+
+    @Test
+    void changesArePagedInModSeqOrderAcrossMailsAndExpunges() {
+        // Sequence 1..7: mails at 1, 2, 4, 6, 7 and expunges at 3, 5
+        stateRepository.upsert(owner.getUserId(), 7);
+        for (long seq : new long[] {1, 2, 4, 6, 7}) {
+            persistMail(seq);
+        }
+        persistExpunge(100L, 3, LocalDateTime.now());
+        persistExpunge(101L, 5, LocalDateTime.now());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> seen = new ArrayList<>();
+        List<Long> expunged = new ArrayList<>();
+        long since = 0;
+        MailChangesDto page;
+        do {
+            page = mailSyncService.getChangesSince(owner.getUserId(), since, 3);
+            assertTrue(page.getChanged().size() + page.getExpunged().size() <= 3);
+            page.getChanged().forEach(mail -> seen.add(mail.getModSeq()));
+            expunged.addAll(page.getExpunged());
+            since = page.getHighestModSeq();
+        } while (page.isHasMore());
+
+        assertEquals(List.of(1L, 2L, 4L, 6L, 7L), seen);
+        assertEquals(List.of(100L, 101L), expunged);
+        assertEquals(7, since);
+    }
+
+    @Test
+    void changedSinceIsBoundedByThePage() {
+        stateRepository.upsert(owner.getUserId(), 4);
+        for (long seq = 1; seq <= 4; seq++) {
+            persistMail(seq);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<MailSummaryDto> changed = mailRepository.findChangedSince(owner.getUserId(), 1, 4, PageRequest.of(0, 2));
+
+        assertEquals(List.of(2L, 3L), changed.stream().map(MailSummaryDto::getModSeq).toList());
+    }
+
+    @Test
+    void clientsBelowThePrunedMarkMustResync() {
+        stateRepository.upsert(owner.getUserId(), 5);
+        persistExpunge(100L, 2, LocalDateTime.now().minusDays(60));
+        persistExpunge(101L, 4, LocalDateTime.now());
+        entityManager.flush();
+
+        List<Object[]> marks = expungeRepository.findPruneMarks(LocalDateTime.now().minusDays(30));
+        assertEquals(1, marks.size());
+        long mark = ((Number) marks.get(0)[1]).longValue();
+        assertEquals(2, mark);
+
+        stateRepository.raisePrunedModSeq(owner.getUserId(), mark);
+        assertEquals(1, expungeRepository.deleteUpTo(owner.getUserId(), mark));
+        entityManager.clear();
+
+        assertTrue(mailSyncService.getChangesSince(owner.getUserId(), 1, 50).isFullResyncRequired());
+        MailChangesDto current = mailSyncService.getChangesSince(owner.getUserId(), 2, 50);
+        assertFalse(current.isFullResyncRequired());
+        assertEquals(List.of(101L), current.getExpunged());
+    }
+
+    @Test
+    void backfillGivesLegacyMailsDistinctSequencesAboveTheCurrentOne() {
+        stateRepository.upsert(owner.getUserId(), 3);
+        for (int i = 0; i < 3; i++) {
+            persistMail(0);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(List.of(owner.getUserId()), mailRepository.findOwnerIdsWithoutModSeq());
+        assertEquals(2, mailSyncService.backfillModSeqs(owner.getUserId(), 2));
+        assertEquals(1, mailSyncService.backfillModSeqs(owner.getUserId(), 2));
+        assertEquals(0, mailSyncService.backfillModSeqs(owner.getUserId(), 2));
+        entityManager.clear();
+
+        List<Long> stamped = mailRepository.findChangedSince(owner.getUserId(), 0, 10, PageRequest.of(0, 10))
+                .stream().map(MailSummaryDto::getModSeq).toList();
+        assertEquals(List.of(4L, 5L, 6L), stamped);
+        assertEquals(6L, stateRepository.findHighestModSeq(owner.getUserId()));
+    }
+
+    private void persistMail(long modSeq) {
+        Mail mail = Mail.builder()
+                .sender("a@mail.test")
+                .receiver(owner.getEmail())
+                .subject("subject " + modSeq)
+                .folderName("INBOX")
+                .senderRel(owner)
+                .owner(owner)
+                .modSeq(modSeq)
+                .build();
+        mail.setBody("body");
+        entityManager.persist(mail);
+    }
+
+    private void persistExpunge(Long mailId, long modSeq, LocalDateTime expungedAt) {
+        entityManager.persist(MailExpunge.builder()
+                .ownerId(owner.getUserId())
+                .mailId(mailId)
+                .modSeq(modSeq)
+                .expungedAt(expungedAt)
+                .build());
+    }
+}
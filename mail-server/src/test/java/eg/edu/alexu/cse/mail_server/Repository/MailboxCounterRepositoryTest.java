@@ -0,0 +1,72 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class MailboxCounterRepositoryTest {
+    private static final Long OWNER = 1L;
+
+    @Autowired
+    private MailboxCounterRepository counterRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void upsertCreatesTheRowThenAddsToIt() {
+        counterRepository.upsert(OWNER, "INBOX", 1, 1);
+        counterRepository.upsert(OWNER, "INBOX", 2, 1);
+        counterRepository.upsert(OWNER, "INBOX", -1, -1);
+
+        FolderCountDto inbox = summary().get(0);
+        assertEquals(2, inbox.getTotal());
+        assertEquals(1, inbox.getUnread());
+    }
+
+    @Test
+    void upsertNeverCreatesANegativeRow() {
+        counterRepository.upsert(OWNER, "trash", -1, -1);
+
+        FolderCountDto trash = summary().get(0);
+        assertEquals(0, trash.getTotal());
+        assertEquals(0, trash.getUnread());
+    }
+
+    @Test
+    void adjustOnlyTouchesExistingRows() {
+        assertEquals(0, counterRepository.adjust(OWNER, "INBOX", 1, 1));
+
+        counterRepository.upsert(OWNER, "INBOX", 1, 0);
+        assertEquals(1, counterRepository.adjust(OWNER, "INBOX", 1, 1));
+
+        FolderCountDto inbox = summary().get(0);
+        assertEquals(2, inbox.getTotal());
+        assertEquals(1, inbox.getUnread());
+    }
+
+    @Test
+    void adjustAllAppliesOneDeltaToEveryOwner() {
+        counterRepository.upsert(1L, "INBOX", 1, 1);
+        counterRepository.upsert(2L, "INBOX", 5, 0);
+
+        assertEquals(2, counterRepository.adjustAll(List.of(1L, 2L, 3L), "INBOX", 1, 1));
+        assertEquals(List.of(1L, 2L), counterRepository.findOwnerIdsWithFolder(List.of(1L, 2L, 3L), "INBOX")
+                .stream().sorted().toList());
+    }
+
+    private List<FolderCountDto> summary() {
+        entityManager.clear();
+        return counterRepository.findSummaryByOwnerId(OWNER);
+    }
+}
@@ -0,0 +1,153 @@
+package eg.edu.alexu.cse.mail_server.Repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import eg.edu.alexu.cse.mail_server.Entity.DeliveryStatus;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxMessage;
+import eg.edu.alexu.cse.mail_server.Entity.OutboxRecipient;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Service.outbox.OutboxDelivery;
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class OutboxMessageRepositoryTest {
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Only the claim and failure steps are exercised; they use nothing but the outbox repository
+    private OutboxDelivery outboxDelivery;
+    private Long outboxId;
+
+    @BeforeEach
+    void setUp() {
+        outboxDelivery = new OutboxDelivery(outboxRepository, null, null, null, null);
+        ReflectionTestUtils.setField(outboxDelivery, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxDelivery, "claimTimeoutMs", 300000L);
+
+        User sender = User.builder()
+                .email("sender@mail.test")
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(sender);
+        Mail sentCopy = Mail.builder()
+                .sender(sender.getEmail())
+                .receiver("receiver@mail.test")
+                .subject("hello")
+                .folderName("SENT")
+                .senderRel(sender)
+                .owner(sender)
+                .build();
+        sentCopy.setBody("body");
+        entityManager.persist(sentCopy);
+
+        LocalDateTime now = LocalDateTime.now();
+        OutboxMessage outbox = OutboxMessage.builder()
+                .sentMail(sentCopy)
+                .status(DeliveryStatus.PENDING)
+                .nextAttemptAt(now.minusSeconds(1))
+                .createdAt(now)
+                .build();
+        outbox.getRecipients().add(OutboxRecipient.builder()
+                .outbox(outbox)
+                .receiverEmail("receiver@mail.test")
+                .receiverId(sender.getUserId())
+                .status(DeliveryStatus.PENDING)
+                .build());
+        entityManager.persist(outbox);
+        entityManager.flush();
+        // Each delivery step reads the entry fresh, as in its own transaction
+        entityManager.clear();
+        outboxId = outbox.getId();
+    }
+
+    @Test
+    void aDueEntryIsClaimedOnce() {
+        assertTrue(outboxDelivery.findDue(10).contains(outboxId));
+
+        LocalDateTime claimedAt = outboxDelivery.claim(outboxId);
+        assertNotNull(claimedAt);
+        assertNull(outboxDelivery.claim(outboxId));
+        assertTrue(outboxDelivery.findDue(10).isEmpty());
+    }
+
+    @Test
+    void aStaleClaimIsTakenOverAndFencesOutTheOldWorker() {
+        outboxDelivery.claim(outboxId);
+        // The first worker claimed ten minutes ago and never finished
+        LocalDateTime staleClaim = LocalDateTime.now().minusMinutes(10).withNano(0);
+        entityManager.createQuery("UPDATE OutboxMessage o SET o.claimedAt = :claimedAt WHERE o.id = :id")
+                .setParameter("claimedAt", staleClaim)
+                .setParameter("id", outboxId)
+                .executeUpdate();
+        entityManager.clear();
+
+        assertTrue(outboxDelivery.findDue(10).contains(outboxId));
+        LocalDateTime takeover = outboxDelivery.claim(outboxId);
+        assertNotNull(takeover);
+
+        assertEquals(0, outboxRepository.holdClaim(outboxId, DeliveryStatus.DELIVERING, staleClaim));
+        assertEquals(1, outboxRepository.holdClaim(outboxId, DeliveryStatus.DELIVERING, takeover));
+
+        // The old worker's failure is not recorded over the new claim
+        outboxDelivery.recordFailure(outboxId, staleClaim, new IllegalStateException("late"));
+        OutboxMessage outbox = reload();
+        assertEquals(DeliveryStatus.DELIVERING, outbox.getStatus());
+        assertEquals(0, outbox.getAttempts());
+    }
+
+    @Test
+    void aFailedAttemptIsRetriedAfterABackoff() {
+        LocalDateTime claimedAt = outboxDelivery.claim(outboxId);
+        outboxDelivery.recordFailure(outboxId, claimedAt, new IllegalStateException("database down"));
+        entityManager.flush();
+
+        OutboxMessage outbox = reload();
+        assertEquals(DeliveryStatus.PENDING, outbox.getStatus());
+        assertEquals(1, outbox.getAttempts());
+        assertEquals("database down", outbox.getLastError());
+        assertTrue(outbox.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+        // Not due until the backoff has passed
+        assertTrue(outboxDelivery.findDue(10).isEmpty());
+        assertNull(outboxDelivery.claim(outboxId));
+    }
+
+    @Test
+    void theLastAllowedFailureGivesUpOnPendingRecipients() {
+        ReflectionTestUtils.setField(outboxDelivery, "maxAttempts", 1);
+
+        LocalDateTime claimedAt = outboxDelivery.claim(outboxId);
+        outboxDelivery.recordFailure(outboxId, claimedAt, new IllegalStateException("still down"));
+        entityManager.flush();
+
+        OutboxMessage outbox = reload();
+        assertEquals(DeliveryStatus.FAILED, outbox.getStatus());
+        assertNotNull(outbox.getCompletedAt());
+        assertEquals(DeliveryStatus.FAILED, outbox.getRecipients().get(0).getStatus());
+    }
+
+    private OutboxMessage reload() {
+        entityManager.clear();
+        return outboxRepository.findById(outboxId).orElseThrow();
+    }
+}
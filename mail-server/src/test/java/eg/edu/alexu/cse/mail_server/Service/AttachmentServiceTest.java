@@ -0,0 +1,145 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.Attachment;
+import eg.edu.alexu.cse.mail_server.Entity.IndexingStatus;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.AttachmentBlobRepository;
+import eg.edu.alexu.cse.mail_server.Repository.AttachmentRepository;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.AttachmentFilter;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Copying a mail whose attachment predates blobs adopts the per-mail file
+ * as a blob; the copies must stay searchable without a file path of their own
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class AttachmentServiceTest {
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private AttachmentBlobRepository blobRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @TempDir
+    Path home;
+
+    private String originalHome;
+    private AttachmentService attachmentService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        originalHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+        FileStorageService fileStorageService = new FileStorageService();
+        fileStorageService.init();
+        attachmentService = new AttachmentService(attachmentRepository, blobRepository, fileStorageService,
+                new BlobLocks(), eventPublisher);
+
+        owner = User.builder()
+                .email("owner@mail.test")
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(owner);
+    }
+
+    @AfterEach
+    void restoreHome() {
+        System.setProperty("user.home", originalHome);
+    }
+
+    @Test
+    void copiedLegacyAttachmentIsIndexedAndSearchable() throws Exception {
+        // An image uploaded before blobs: its own file, no hash, no status, nothing extracted
+        Path legacyFile = Files.createDirectories(home.resolve("mansy-mail-uploads/1")).resolve("photo.png");
+        Files.write(legacyFile, new byte[] {1, 2, 3, 4});
+        Mail original = persistMail("INBOX");
+        Attachment legacy = Attachment.builder()
+                .fileName("photo.png")
+                .storedFileName("legacy_photo.png")
+                .contentType("image/png")
+                .fileSize(4L)
+                .filePath(legacyFile.toString())
+                .indexedContent("")
+                .uploadDate(LocalDateTime.now())
+                .mail(original)
+                .build();
+        entityManager.persist(legacy);
+        Mail copy = persistMail("Work");
+        entityManager.flush();
+
+        List<Attachment> copies = attachmentService.copyAttachments(List.of(legacy), List.of(copy));
+        entityManager.flush();
+        entityManager.clear();
+
+        Attachment adopted = attachmentRepository.findById(legacy.getId()).orElseThrow();
+        assertNotNull(adopted.getBlob());
+        assertEquals(IndexingStatus.INDEXED, adopted.getIndexingStatus());
+        assertEquals(2, adopted.getBlob().getRefCount());
+
+        Attachment copied = attachmentRepository.findById(copies.get(0).getId()).orElseThrow();
+        assertEquals(IndexingStatus.INDEXED, copied.getIndexingStatus());
+        assertEquals(legacyFile.toString(), copied.getFilePath());
+
+        // Searching the copy reads the stored (empty) text instead of parsing a file
+        Mail reloaded = entityManager.find(Mail.class, copy.getMailId());
+        assertFalse(new AttachmentFilter("invoice").filter(reloaded));
+        assertEquals(0, new AttachmentFilter("invoice").getScore(reloaded));
+    }
+
+    @Test
+    void attachmentWithoutAFileIsNotParsed() {
+        Attachment orphan = Attachment.builder()
+                .fileName("lost.txt")
+                .contentType("text/plain")
+                .build();
+        assertNull(orphan.getFilePath());
+
+        Mail mail = Mail.builder().attachments(List.of(orphan)).build();
+        assertFalse(new AttachmentFilter("report").filter(mail));
+    }
+
+    private Mail persistMail(String folder) {
+        Mail mail = Mail.builder()
+                .sender(owner.getEmail())
+                .receiver(owner.getEmail())
+                .subject("photos")
+                .folderName(folder)
+                .senderRel(owner)
+                .owner(owner)
+                .build();
+        mail.setBody("see attached");
+        entityManager.persist(mail);
+        return mail;
+    }
+}
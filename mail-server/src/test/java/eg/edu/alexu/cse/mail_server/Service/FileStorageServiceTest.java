@@ -0,0 +1,284 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Uploads must stream to disk: a file several times larger than the heap
+ * is stored without an OutOfMemoryError (surefire runs tests with -Xmx256m)
+ *
+ * Compressed blobs read back as their original content, and only content
+ * that shrinks is compressed; the ratio and throughput on a small corpus
+ * of logs, CSV and JPEG are printed
+ */
+class FileStorageServiceTest {
+    private static final long ONE_GB = 1024L * 1024 * 1024;
+
+    @TempDir
+    Path home;
+
+    private String originalHome;
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        // The storage root is resolved from user.home when the service is created
+        originalHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+        fileStorageService = new FileStorageService();
+        fileStorageService.init();
+    }
+
+    @AfterEach
+    void restoreHome() {
+        System.setProperty("user.home", originalHome);
+    }
+
+    @Test
+    void storesUploadLargerThanHeap() throws Exception {
+        assumeTrue(Runtime.getRuntime().maxMemory() < ONE_GB, "run with a heap smaller than the upload");
+
+        MultipartFile upload = new GeneratedFile(ONE_GB, "video/mp4");
+        FileStorageService.StagedBlob staged = fileStorageService.stageBlob(upload);
+        FileStorageService.StoredBlob stored = fileStorageService.placeBlob(staged);
+
+        assertEquals(ONE_GB, stored.size());
+        assertEquals(ONE_GB, Files.size(Path.of(stored.filePath())));
+        assertEquals(sha256(new PatternInputStream(ONE_GB)), stored.contentHash());
+    }
+
+    @Test
+    void compressedBlobReadsBackAsTheOriginal() throws Exception {
+        byte[] content = logText(2 * 1024 * 1024);
+        FileStorageService.StoredBlob stored = store(new MockMultipartFile("file", "app.log", "text/plain", content));
+
+        assertTrue(fileStorageService.isCompressedFile(stored.filePath()));
+        assertEquals(content.length, stored.size());
+        assertTrue(Files.size(Path.of(stored.filePath())) < content.length / 2);
+
+        try (InputStream in = fileStorageService.openStoredFile(stored.filePath())) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        assertArrayEquals(content, fileStorageService.readFileBytes(stored.filePath()));
+
+        // A byte range is cut out of the inflated content
+        Resource resource = fileStorageService.loadStoredFile(stored.filePath(), stored.size());
+        assertEquals(content.length, resource.contentLength());
+        try (InputStream in = resource.getInputStream()) {
+            in.skipNBytes(1_000_000);
+            assertArrayEquals(Arrays.copyOfRange(content, 1_000_000, 1_000_100), in.readNBytes(100));
+        }
+    }
+
+    @Test
+    void completedUploadIsCompressedLikeAnAttachment() throws Exception {
+        byte[] content = csvText(1024 * 1024);
+        fileStorageService.writeChunk("upload-1", 0, new ByteArrayInputStream(content), content.length);
+
+        FileStorageService.StoredBlob stored = fileStorageService.completeUpload("upload-1", null, "text/csv");
+
+        assertTrue(fileStorageService.isCompressedFile(stored.filePath()));
+        assertArrayEquals(content, fileStorageService.readFileBytes(stored.filePath()));
+    }
+
+    @Test
+    void contentThatDoesNotShrinkIsStoredAsIs() throws Exception {
+        byte[] random = randomBytes(512 * 1024, 7);
+        byte[] text = logText(512 * 1024);
+
+        // Unknown binary, a compressible type whose bytes do not shrink, and a file over the size limit
+        assertStoredAsIs(new MockMultipartFile("file", "data.bin", "application/octet-stream", text), text);
+        assertStoredAsIs(new MockMultipartFile("file", "noise.txt", "text/plain", random), random);
+        ReflectionTestUtils.setField(fileStorageService, "compressMaxBytes", 256 * 1024L);
+        byte[] bigText = logText(384 * 1024);
+        assertStoredAsIs(new MockMultipartFile("file", "big.log", "text/plain", bigText), bigText);
+    }
+
+    @Test
+    void compressionRatioAndThroughputOnACorpus() throws Exception {
+        int size = 4 * 1024 * 1024;
+        report("log", new MockMultipartFile("file", "server.log", "text/plain", logText(size)), 0.5);
+        report("csv", new MockMultipartFile("file", "orders.csv", "text/csv", csvText(size)), 0.6);
+        report("jpeg", new MockMultipartFile("file", "photo.jpg", "image/jpeg", randomBytes(size, 11)), 1.0);
+    }
+
+    // Stores the file, prints its ratio and throughput, and checks the ratio is at most maxRatio
+    private void report(String kind, MultipartFile file, double maxRatio) throws Exception {
+        long start = System.nanoTime();
+        FileStorageService.StoredBlob stored = store(file);
+        long storeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        try (InputStream in = fileStorageService.openStoredFile(stored.filePath())) {
+            assertEquals(file.getSize(), in.transferTo(OutputStream.nullOutputStream()));
+        }
+        long readNanos = System.nanoTime() - start;
+
+        double ratio = (double) Files.size(Path.of(stored.filePath())) / file.getSize();
+        System.out.printf("%s: %d bytes stored as %.1f%%, write %.0f MB/s, read %.0f MB/s%n", kind, file.getSize(),
+                ratio * 100, megabytesPerSecond(file.getSize(), storeNanos), megabytesPerSecond(file.getSize(), readNanos));
+        assertTrue(ratio <= maxRatio, kind + " stored at ratio " + ratio);
+    }
+
+    private void assertStoredAsIs(MultipartFile file, byte[] content) throws Exception {
+        FileStorageService.StoredBlob stored = store(file);
+        assertFalse(fileStorageService.isCompressedFile(stored.filePath()), file.getOriginalFilename());
+        assertArrayEquals(content, Files.readAllBytes(Path.of(stored.filePath())));
+    }
+
+    private FileStorageService.StoredBlob store(MultipartFile file) throws Exception {
+        FileStorageService.StagedBlob staged = fileStorageService.stageBlob(file);
+        try {
+            return fileStorageService.placeBlob(staged);
+        } finally {
+            fileStorageService.discardStaged(staged);
+        }
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    private static byte[] logText(int size) {
+        Random random = new Random(3);
+        String[] levels = {"INFO", "DEBUG", "WARN", "ERROR"};
+        StringBuilder text = new StringBuilder(size + 200);
+        for (int line = 0; text.length() < size; line++) {
+            text.append("2025-01-01T12:").append(String.format("%02d:%02d.%03d", line / 60000 % 60, line / 1000 % 60, line % 1000))
+                    .append(' ').append(levels[random.nextInt(levels.length)])
+                    .append(" [worker-").append(random.nextInt(16)).append("] MailService - delivered mail ")
+                    .append(random.nextInt(1_000_000)).append(" to user").append(random.nextInt(5000))
+                    .append("@mail.test in ").append(random.nextInt(300)).append(" ms\n");
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.US_ASCII), size);
+    }
+
+    private static byte[] csvText(int size) {
+        Random random = new Random(5);
+        StringBuilder text = new StringBuilder(size + 200).append("order_id,customer,product,quantity,price,date\n");
+        for (int row = 1; text.length() < size; row++) {
+            text.append(row).append(",customer").append(random.nextInt(2000))
+                    .append(",product").append(random.nextInt(300)).append(',').append(1 + random.nextInt(20))
+                    .append(',').append(random.nextInt(100_000) / 100.0)
+                    .append(",2025-").append(String.format("%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28))).append('\n');
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.US_ASCII), size);
+    }
+
+    // Stands in for JPEG data, which is already entropy coded
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(InputStream in) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Deterministic content generated on the fly, so the test itself never holds the file
+    private static class PatternInputStream extends InputStream {
+        private final long length;
+        private long position;
+
+        PatternInputStream(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (position >= length) {
+                return -1;
+            }
+            return valueAt(position++);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (position >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(count, length - position);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = (byte) valueAt(position++);
+            }
+            return n;
+        }
+
+        private static int valueAt(long position) {
+            return (int) ((position * 31 + (position >>> 13)) & 0xFF);
+        }
+    }
+
+    private record GeneratedFile(long size, String contentType) implements MultipartFile {
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "large.bin";
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            throw new UnsupportedOperationException("uploads must be streamed");
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new PatternInputStream(size);
+        }
+
+        @Override
+        public void transferTo(File dest) {
+            throw new UnsupportedOperationException("uploads must be streamed");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package eg.edu.alexu.cse.mail_server.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxCounterRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxStateRepository;
+import eg.edu.alexu.cse.mail_server.dto.FolderCountDto;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Counters are rebuilt per user from the mail table, once per version,
+ * overwriting rows that early deltas created before the rebuild ran
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class MailboxCounterServiceTest {
+
+    @Autowired
+    private MailboxCounterRepository counterRepository;
+
+    @Autowired
+    private MailRepository mailRepository;
+
+    @Autowired
+    private MailboxStateRepository mailboxStateRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private MailboxCounterService counterService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        counterService = new MailboxCounterService(counterRepository, mailRepository, mailboxStateRepository);
+        owner = persistUser("owner@mail.test");
+    }
+
+    @Test
+    void rebuildOverwritesCountersCreatedBeforeIt() {
+        // Existing mailbox from before the counters table: no rows at all
+        persistMail(owner, "INBOX", false);
+        persistMail(owner, "INBOX", false);
+        persistMail(owner, "INBOX", true);
+        persistMail(owner, "Work", true);
+        // A request served before startup finished creates the INBOX row from its delta alone
+        counterService.mailAdded(persistMail(owner, "INBOX", false));
+        entityManager.flush();
+        assertEquals(List.of(1L, 1L), counts("INBOX"));
+
+        assertEquals(List.of(owner.getUserId()),
+                mailRepository.findOwnerIdsWithCountersBefore(MailboxCounterService.COUNTERS_VERSION));
+        assertTrue(counterService.rebuild(owner.getUserId()));
+
+        assertEquals(List.of(4L, 3L), counts("INBOX"));
+        assertEquals(List.of(1L, 0L), counts("Work"));
+        assertTrue(mailRepository.findOwnerIdsWithCountersBefore(MailboxCounterService.COUNTERS_VERSION).isEmpty());
+    }
+
+    @Test
+    void rebuildRunsOncePerVersionAndLaterDeltasApplyOnTop() {
+        persistMail(owner, "INBOX", false);
+        entityManager.flush();
+        assertTrue(counterService.rebuild(owner.getUserId()));
+
+        counterService.mailAdded(persistMail(owner, "INBOX", false));
+        assertFalse(counterService.rebuild(owner.getUserId()));
+
+        assertEquals(List.of(2L, 2L), counts("INBOX"));
+    }
+
+    @Test
+    void rebuildZeroesFoldersThatNoLongerHaveMail() {
+        User other = persistUser("other@mail.test");
+        persistMail(owner, "INBOX", false);
+        persistMail(other, "INBOX", false);
+        entityManager.flush();
+        // Stale rows: a folder emptied while counters were not maintained, and another user's
+        counterRepository.upsert(owner.getUserId(), "Archive", 3, 1);
+        counterRepository.upsert(other.getUserId(), "INBOX", 7, 7);
+
+        assertTrue(counterService.rebuild(owner.getUserId()));
+
+        assertEquals(List.of(0L, 0L), counts("Archive"));
+        assertEquals(List.of(1L, 1L), counts("INBOX"));
+        // Only the rebuilt user's rows are touched
+        entityManager.clear();
+        FolderCountDto otherInbox = counterRepository.findSummaryByOwnerId(other.getUserId()).get(0);
+        assertEquals(7, otherInbox.getTotal());
+    }
+
+    // [total, unread] of one of the owner's folders
+    private List<Long> counts(String folder) {
+        entityManager.flush();
+        entityManager.clear();
+        Map<String, FolderCountDto> summary = counterRepository.findSummaryByOwnerId(owner.getUserId()).stream()
+                .collect(Collectors.toMap(FolderCountDto::getFolderName, dto -> dto));
+        FolderCountDto dto = summary.get(folder);
+        return List.of(dto.getTotal(), dto.getUnread());
+    }
+
+    private Mail persistMail(User mailOwner, String folder, boolean read) {
+        Mail mail = Mail.builder()
+                .sender("sender@mail.test")
+                .receiver(mailOwner.getEmail())
+                .subject("hello")
+                .folderName(folder)
+                .isRead(read)
+                .senderRel(mailOwner)
+                .owner(mailOwner)
+                .build();
+        mail.setBody("body");
+        entityManager.persist(mail);
+        return mail;
+    }
+
+    private User persistUser(String email) {
+        User user = User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,146 @@
+package eg.edu.alexu.cse.mail_server.Service.Strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import eg.edu.alexu.cse.mail_server.Entity.Attachment;
+import eg.edu.alexu.cse.mail_server.Entity.AttachmentBlob;
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+
+/**
+ * Parallel evaluation returns exactly the sequential ranking, workers only
+ * see detached snapshots, and the speedup over 1-16 threads is printed
+ */
+class MailFilterTest {
+    private static final int MAILBOX_SIZE = 10_000;
+    private static final int THRESHOLD = 500;
+    private static final int PAGE_SIZE = 50;
+    private static final String[] WORDS = {"meeting", "invoice", "report", "schedule", "project", "review",
+            "budget", "deadline", "update", "contract", "travel", "launch", "customer", "release", "quarter"};
+
+    @Test
+    void parallelRankingMatchesSequentialAndScales() {
+        List<Mail> mailbox = mailbox(MAILBOX_SIZE);
+        MailFilter.RankedPage expected = new MailFilter(new BodyFilter("quarterly budget review")).getTopEmails(mailbox, null, PAGE_SIZE);
+        long sequentialNanos = time(new MailFilter(new BodyFilter("quarterly budget review")), mailbox);
+        System.out.println("Cores available: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("sequential: " + sequentialNanos / 1_000_000 + " ms");
+
+        for (int threads : new int[] {1, 2, 4, 8, 16}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                MailFilter parallel = new MailFilter(new BodyFilter("quarterly budget review"), pool, THRESHOLD);
+                assertEquals(ids(expected), ids(parallel.getTopEmails(mailbox, null, PAGE_SIZE)));
+
+                long nanos = time(parallel, mailbox);
+                System.out.printf("%2d threads: %d ms, speedup %.2fx%n", threads, nanos / 1_000_000,
+                        (double) sequentialNanos / nanos);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void workersOnlyReadDetachedAttachments() {
+        List<Mail> mailbox = mailbox(200);
+        Set<Attachment> originals = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Mail mail : mailbox) {
+            originals.addAll(mail.getAttachments());
+        }
+
+        Set<Attachment> seen = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        FilterStrategy recording = new FilterStrategy() {
+            @Override
+            public boolean filter(Mail mail) {
+                seen.addAll(mail.getAttachments());
+                return true;
+            }
+
+            @Override
+            public int getScore(Mail mail) {
+                return 1;
+            }
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new MailFilter(recording, pool, 10).getEmails(mailbox);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(originals.size(), seen.size());
+        for (Attachment attachment : seen) {
+            assertFalse(originals.contains(attachment));
+            // The path was resolved through the blob before the copy was handed out
+            assertNull(attachment.getBlob());
+            assertTrue(attachment.getFilePath().startsWith("/blobs/"));
+        }
+    }
+
+    // Runs a few warm-up rounds, then returns the average of the timed ones
+    private static long time(MailFilter filter, List<Mail> mailbox) {
+        for (int i = 0; i < 3; i++) {
+            filter.getTopEmails(mailbox, null, PAGE_SIZE);
+        }
+        int rounds = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            filter.getTopEmails(mailbox, null, PAGE_SIZE);
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    private static List<Long> ids(MailFilter.RankedPage page) {
+        return page.matches().stream().map(scored -> scored.mail().getMailId()).toList();
+    }
+
+    // Bodies of a few hundred words, each mail with one blob-backed attachment
+    private static List<Mail> mailbox(int size) {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Mail> mails = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int word = 0; word < 300; word++) {
+                body.append(WORDS[random.nextInt(WORDS.length)]).append(word % 12 == 11 ? ". " : " ");
+            }
+            AttachmentBlob blob = AttachmentBlob.builder()
+                    .contentHash("hash" + i)
+                    .filePath("/blobs/hash" + i)
+                    .build();
+            Attachment attachment = Attachment.builder()
+                    .id((long) i)
+                    .fileName("file" + i + ".txt")
+                    .contentType("text/plain")
+                    .blob(blob)
+                    .indexedContent("")
+                    .build();
+            mails.add(Mail.builder()
+                    .mailId((long) i)
+                    .sender("sender" + random.nextInt(50) + "@mail.test")
+                    .receiver("owner@mail.test")
+                    .subject("subject " + i)
+                    .body(body.toString())
+                    .timestamp(start.plusMinutes(i))
+                    .folderName("INBOX")
+                    .attachments(new ArrayList<>(List.of(attachment)))
+                    .build());
+        }
+        return mails;
+    }
+}
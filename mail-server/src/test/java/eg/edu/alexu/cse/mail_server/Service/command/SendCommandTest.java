@@ -0,0 +1,175 @@
+package eg.edu.alexu.cse.mail_server.Service.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import eg.edu.alexu.cse.mail_server.Entity.OutboxMessage;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Repository.MailExpungeRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailTermRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxCounterRepository;
+import eg.edu.alexu.cse.mail_server.Repository.MailboxStateRepository;
+import eg.edu.alexu.cse.mail_server.Repository.OutboxMessageRepository;
+import eg.edu.alexu.cse.mail_server.Repository.UserRepository;
+import eg.edu.alexu.cse.mail_server.Service.MailSyncService;
+import eg.edu.alexu.cse.mail_server.Service.MailboxCounterService;
+import eg.edu.alexu.cse.mail_server.Service.directory.UserDirectory;
+import eg.edu.alexu.cse.mail_server.Service.outbox.OutboxService;
+import eg.edu.alexu.cse.mail_server.Service.search.MailSearchIndex;
+import eg.edu.alexu.cse.mail_server.Service.upload.UploadService;
+import eg.edu.alexu.cse.mail_server.dto.ComposeEmailDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Receivers are resolved with one query whatever their number, and an
+ * unknown receiver fails the send before anything is written
+ * Send latency per receiver count is printed
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class SendCommandTest {
+    private static final int MAX_RECEIVERS = 500;
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MailRepository mailRepository;
+    @Autowired
+    private MailboxCounterRepository counterRepository;
+    @Autowired
+    private MailboxStateRepository mailboxStateRepository;
+    @Autowired
+    private MailExpungeRepository mailExpungeRepository;
+    @Autowired
+    private MailTermRepository mailTermRepository;
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<String> receivers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        persistUser("sender@mail.test");
+        for (int i = 0; i < MAX_RECEIVERS; i++) {
+            receivers.add(persistUser("receiver" + i + "@mail.test").getEmail());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void receiversAreLoadedWithOneQueryWhateverTheirNumber() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long oneReceiver = countQueries(statistics, 1);
+        long manyReceivers = countQueries(statistics, 50);
+
+        // Everything but the receiver lookup is per mail, so the totals only match with a single lookup
+        assertEquals(oneReceiver, manyReceivers);
+    }
+
+    @Test
+    void unknownReceiverFailsBeforeAnythingIsWritten() {
+        ComposeEmailDTO dto = compose(List.of(receivers.get(0), "nobody@mail.test", "ghost@mail.test"));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> newSendCommand().execute(dto));
+
+        assertTrue(error.getMessage().contains("nobody@mail.test,ghost@mail.test"), error.getMessage());
+        assertEquals(0, mailRepository.count());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void sendLatencyByReceiverCount() {
+        for (int count : new int[] {1, 10, 100, MAX_RECEIVERS}) {
+            ComposeEmailDTO dto = compose(receivers.subList(0, count));
+            SendCommand sendCommand = newSendCommand();
+
+            long start = System.nanoTime();
+            sendCommand.execute(dto);
+            entityManager.flush();
+            long micros = (System.nanoTime() - start) / 1_000;
+            entityManager.clear();
+
+            System.out.println("Send to " + count + " receivers: " + micros + " us");
+        }
+        assertEquals(4, outboxRepository.count());
+    }
+
+    // Queries run by one send, with a cold user directory so every receiver comes from the database
+    private long countQueries(Statistics statistics, int receiverCount) {
+        ComposeEmailDTO dto = compose(receivers.subList(0, receiverCount));
+        SendCommand sendCommand = newSendCommand();
+        statistics.clear();
+
+        sendCommand.execute(dto);
+        entityManager.flush();
+        long queries = statistics.getQueryExecutionCount();
+        entityManager.clear();
+
+        OutboxMessage outbox = outboxRepository.findAll().stream()
+                .filter(entry -> entry.getRecipients().size() == receiverCount)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(receiverCount, outbox.getRecipients().size());
+        return queries;
+    }
+
+    private SendCommand newSendCommand() {
+        UserDirectory userDirectory = new UserDirectory(userRepository);
+        ReflectionTestUtils.setField(userDirectory, "maxEntries", 10000);
+        // No attachments or uploads are sent here, so the file services are not needed
+        return new SendCommand(
+                userDirectory,
+                mailRepository,
+                new MailboxCounterService(counterRepository, mailRepository, mailboxStateRepository),
+                new MailSyncService(mailboxStateRepository, mailExpungeRepository, mailRepository),
+                null,
+                new OutboxService(outboxRepository, eventPublisher),
+                new UploadService(null, userRepository, null, null),
+                new MailSearchIndex(mailTermRepository, mailRepository));
+    }
+
+    private ComposeEmailDTO compose(List<String> to) {
+        ComposeEmailDTO dto = new ComposeEmailDTO();
+        dto.setSender("sender@mail.test");
+        dto.setReceivers(new ArrayList<>(to));
+        dto.setSubject("quarterly report");
+        dto.setBody("numbers are attached");
+        dto.setPriority(2);
+        return dto;
+    }
+
+    private User persistUser(String email) {
+        User user = User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,81 @@
+package eg.edu.alexu.cse.mail_server.Service.push;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import eg.edu.alexu.cse.mail_server.advice.GlobalExceptionHandler;
+
+/**
+ * A stream past mail.push.max-connections is refused with 503 and
+ * Retry-After, even though the request only accepts text/event-stream
+ */
+class MailEventHubTest {
+    private MailEventHub hub;
+    private MockMvc mockMvc;
+
+    // Same mapping as MailController's /events endpoint
+    @RestController
+    static class EventsController {
+        private final MailEventHub hub;
+
+        EventsController(MailEventHub hub) {
+            this.hub = hub;
+        }
+
+        @GetMapping(path = "/events/{userEmail}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter subscribe(@PathVariable String userEmail) {
+            return hub.subscribe(userEmail);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        hub = new MailEventHub();
+        ReflectionTestUtils.setField(hub, "maxConnections", 1);
+        ReflectionTestUtils.setField(hub, "streamTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(hub, "retryAfterSeconds", 30L);
+        mockMvc = MockMvcBuilders.standaloneSetup(new EventsController(hub))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void subscribeBeyondTheCapThrows() {
+        hub.subscribe("first@mail.test");
+
+        TooManyStreamsException error = assertThrows(TooManyStreamsException.class,
+                () -> hub.subscribe("second@mail.test"));
+        assertEquals(30, error.getRetryAfterSeconds());
+    }
+
+    @Test
+    void fullPoolIsAnsweredWith503AndRetryAfter() throws Exception {
+        hub.subscribe("first@mail.test");
+
+        mockMvc.perform(get("/events/second@mail.test").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"))
+                .andExpect(content().string(""));
+    }
+}
@@ -0,0 +1,148 @@
+package eg.edu.alexu.cse.mail_server.Service.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import eg.edu.alexu.cse.mail_server.Entity.Mail;
+import eg.edu.alexu.cse.mail_server.Entity.User;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.BodyFilter;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.FilterStrategy;
+import eg.edu.alexu.cse.mail_server.Service.Strategy.SubjectFilter;
+import jakarta.persistence.EntityManager;
+
+/**
+ * The index may only narrow a search: running BodyFilter or SubjectFilter over
+ * the candidates must give exactly the mails a full scan gives
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(MailSearchIndex.class)
+class MailSearchIndexTest {
+    private static final String[][] MAILS = {
+            {"Quarterly report", "Please review the quarterly numbers before Monday."},
+            {"Re: lunch?", "Lunch at noon; the usual place!"},
+            {"Hello world", "hello,world:again"},
+            {"100% discount_code", "Use code SAVE_10 for 10% off"},
+            {"Report overdue", "The report is overdue. Reporting tools are down."},
+            {"", ""},
+    };
+
+    private static final String[] QUERIES = {
+            "report", "rep", "port", "lunch", "LUNCH noon", "hello", "llo wor", "world",
+            "100%", "discount_", "save_1", "10%", "zzz", "overdue report", "again",
+    };
+
+    @Autowired
+    private MailSearchIndex mailSearchIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User owner;
+    private final List<Mail> mails = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = persistUser("owner@mail.test");
+        User other = persistUser("other@mail.test");
+        for (String[] mail : MAILS) {
+            mails.add(persistMail(owner, mail[0], mail[1]));
+        }
+        // Same content in another mailbox must not leak into the owner's candidates
+        Mail foreign = persistMail(other, "Quarterly report", "report");
+        entityManager.flush();
+
+        List<Mail> all = new ArrayList<>(mails);
+        all.add(foreign);
+        mailSearchIndex.indexAll(all);
+        mailSearchIndex.markReady();
+        entityManager.flush();
+    }
+
+    @Test
+    void bodyCandidatesGiveTheSameMatchesAsAFullScan() {
+        for (String query : QUERIES) {
+            assertSameMatches(new BodyFilter(query), query);
+        }
+    }
+
+    @Test
+    void subjectCandidatesGiveTheSameMatchesAsAFullScan() {
+        for (String query : QUERIES) {
+            assertSameMatches(new SubjectFilter(query), query);
+        }
+    }
+
+    @Test
+    void reindexReplacesTheOldTerms() {
+        Mail mail = mails.get(0);
+        mail.setSubject("Budget");
+        mail.setBody("budget only");
+        mailSearchIndex.reindex(mail);
+        entityManager.flush();
+
+        assertSameMatches(new SubjectFilter("quarterly"), "quarterly");
+        assertSameMatches(new BodyFilter("budget"), "budget");
+    }
+
+    @Test
+    void emptyQueryWordsAreNotNarrowed() {
+        assertNull(mailSearchIndex.findCandidates(owner.getUserId(), new SubjectFilter(", ")));
+    }
+
+    private void assertSameMatches(FilterStrategy filter, String query) {
+        Set<Long> expected = mails.stream()
+                .filter(filter::filter)
+                .map(Mail::getMailId)
+                .collect(Collectors.toSet());
+
+        Set<Long> candidates = mailSearchIndex.findCandidates(owner.getUserId(), filter);
+        if (candidates == null) {
+            return; // Not narrowed: the search scans the whole mailbox
+        }
+        Set<Long> narrowed = mails.stream()
+                .filter(mail -> candidates.contains(mail.getMailId()))
+                .filter(filter::filter)
+                .map(Mail::getMailId)
+                .collect(Collectors.toSet());
+
+        assertEquals(expected, narrowed, filter.getClass().getSimpleName() + " \"" + query + "\"");
+    }
+
+    private User persistUser(String email) {
+        User user = User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("User")
+                .password("secret")
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Mail persistMail(User mailOwner, String subject, String body) {
+        Mail mail = Mail.builder()
+                .sender("sender@mail.test")
+                .receiver(mailOwner.getEmail())
+                .subject(subject)
+                .folderName("INBOX")
+                .senderRel(mailOwner)
+                .owner(mailOwner)
+                .build();
+        mail.setBody(body);
+        entityManager.persist(mail);
+        return mail;
+    }
+}